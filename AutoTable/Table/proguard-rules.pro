@@ -19,3 +19,8 @@
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
 #-renamesourcefileattribute SourceFile
+
+# TableCompiler 生成的映射器通过类名反射加载
+-keep class * implements com.jacky.table.RowMapper {
+    <init>();
+}
@@ -0,0 +1,66 @@
+package com.jacky.table;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+/**
+ * 后台线程执行的读写操作
+ */
+@RunWith(AndroidJUnit4.class)
+public class AsyncDBManagerTest {
+
+    private DBManager manager;
+    private AsyncDBManager async;
+
+    @Before
+    public void setUp() {
+        manager = new DBManager(SQLiteDatabase.create(null));
+        async = new AsyncDBManager(manager);
+    }
+
+    @After
+    public void tearDown() {
+        async.shutdown();
+        manager.close();
+    }
+
+    private static final AsyncDBManager.Task<Integer> TASK = new AsyncDBManager.Task<Integer>() {
+        @Override
+        public Integer run(DBManager manager) {
+            return 1;
+        }
+    };
+
+    @Test
+    public void readAndWrite() throws Exception {
+        assertEquals(Integer.valueOf(1), async.read(TASK, null).get());
+        assertEquals(Integer.valueOf(1), async.write(TASK, null).get());
+    }
+
+    @Test
+    public void rejectedAfterShutdown() throws InterruptedException {
+        async.shutdown();
+        assertRejected(async.read(TASK, null));
+        assertRejected(async.write(TASK, null));
+    }
+
+    private static void assertRejected(Future<Integer> future) throws InterruptedException {
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+}
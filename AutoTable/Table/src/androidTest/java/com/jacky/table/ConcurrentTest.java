@@ -0,0 +1,144 @@
+package com.jacky.table;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 并发模式（WAL）：写入事务期间其他线程依然可以查询，事务状态按线程区分
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConcurrentTest {
+
+    private static final String NAME = "concurrent_test.db";
+
+    @Table(value = "note", autoId = true)
+    static class Note {
+        @Column(value = "id", isPrimary = true)
+        long id;
+        @Column("text")
+        String text;
+
+        Note() {}
+
+        Note(String text) {
+            this.text = text;
+        }
+    }
+
+    private Context context;
+    private DBManager manager;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(NAME);
+        manager = new DBManager(context, NAME, true);
+        manager.createTables(context, Note.class);
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+        context.deleteDatabase(NAME);
+    }
+
+    @Test
+    public void fileDatabaseIsConcurrent() {
+        assertTrue(manager.isConcurrent());
+    }
+
+    @Test
+    public void readDuringTransaction() throws InterruptedException {
+        manager.insert(new Note("committed"));
+
+        manager.beginTransaction();
+        try {
+            manager.insert(new Note("pending"));
+            //其他线程只能看到已提交的数据，并且不会被写入事务阻塞
+            assertEquals(1, countInOtherThread());
+            manager.setTransactionSuccessful();
+        } finally {
+            manager.endTransaction();
+        }
+        assertEquals(2, countInOtherThread());
+    }
+
+    @Test
+    public void transactionStateIsPerThread() throws InterruptedException {
+        final AtomicInteger inTransaction = new AtomicInteger(-1);
+        manager.beginTransaction();
+        try {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    inTransaction.set(manager.inTransaction() ? 1 : 0);
+                }
+            });
+            thread.start();
+            thread.join();
+            assertTrue(manager.inTransaction());
+        } finally {
+            manager.endTransaction();
+        }
+        assertEquals(0, inTransaction.get());
+        assertFalse(manager.inTransaction());
+    }
+
+    /**
+     * 非并发模式只有一个连接：其他线程编译语句时等待连接，不能阻塞事务线程获取预编译语句
+     */
+    @Test
+    public void statementCacheDoesNotBlockTransaction() throws InterruptedException {
+        final DBManager single = new DBManager(SQLiteDatabase.create(null));
+        try {
+            single.createTables(null, Note.class);
+            final AtomicInteger count = new AtomicInteger(-1);
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    count.set(single.getCount(Note.class));
+                }
+            });
+
+            single.beginTransaction();
+            try {
+                single.insert(new Note("a"));
+                reader.start();
+                Thread.sleep(200);
+                single.insert(new Note("b"));
+                single.deleteByID(Note.class, "1");
+                single.setTransactionSuccessful();
+            } finally {
+                single.endTransaction();
+            }
+            reader.join(5000);
+            assertEquals(1, count.get());
+        } finally {
+            single.close();
+        }
+    }
+
+    private int countInOtherThread() throws InterruptedException {
+        final AtomicInteger count = new AtomicInteger(-1);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                count.set(manager.getCount(Note.class));
+            }
+        });
+        thread.start();
+        thread.join(5000);
+        return count.get();
+    }
+}
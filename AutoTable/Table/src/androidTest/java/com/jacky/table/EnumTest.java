@@ -0,0 +1,88 @@
+package com.jacky.table;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 按序号、名称保存的枚举字段读写和查询
+ */
+@RunWith(AndroidJUnit4.class)
+public class EnumTest {
+
+    enum Color { RED, GREEN, BLUE }
+
+    @Table("car")
+    static class Car {
+        @Column(value = "id", isPrimary = true)
+        String id;
+        @Column(value = "color", enumType = EnumType.ORDINAL)
+        Color color;
+        @Column("paint")
+        Color paint;
+
+        Car() {}
+
+        Car(String id, Color color, Color paint) {
+            this.id = id;
+            this.color = color;
+            this.paint = paint;
+        }
+    }
+
+    private DBManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new DBManager(SQLiteDatabase.create(null));
+        manager.createTables(null, Car.class);
+        manager.insert(new Car("a", Color.GREEN, Color.BLUE), new Car("b", Color.RED, null));
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void roundTrip() {
+        Car car = manager.queryById(Car.class, "a");
+        assertSame(Color.GREEN, car.color);
+        assertSame(Color.BLUE, car.paint);
+        assertNull(manager.queryById(Car.class, "b").paint);
+
+        Cursor cursor = manager.rawQuery("SELECT typeof(color),color,paint FROM car WHERE id='a'", null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("integer", cursor.getString(0));
+            assertEquals(1, cursor.getInt(1));
+            assertEquals("BLUE", cursor.getString(2));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void queryByEnum() {
+        CompiledQuery<Car> query = Query.of(Car.class).eq("color", Color.GREEN).compile();
+        List<Car> list = manager.query(query);
+        assertEquals(1, list.size());
+        assertEquals("a", list.get(0).id);
+
+        list = manager.query(query, Color.RED);
+        assertEquals(1, list.size());
+        assertEquals("b", list.get(0).id);
+
+        assertEquals(0, manager.getCount(query, Color.BLUE));
+        assertEquals(1, manager.getCount(Query.of(Car.class).eq("paint", Color.BLUE)));
+    }
+}
@@ -0,0 +1,126 @@
+package com.jacky.table;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 按注解升级已存在的表结构，原有数据需要保留
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+
+    @Table("book")
+    static class BookV1 {
+        @Column(value = "id", isPrimary = true)
+        long id;
+        @Column("name")
+        String name;
+    }
+
+    /** 新增 pages 字段，name 改名为 title */
+    @Table("book")
+    static class BookV2 {
+        @Column(value = "id", isPrimary = true)
+        long id;
+        @Column(value = "title", oldName = "name")
+        String title;
+        @Column("pages")
+        int pages;
+    }
+
+    /** 主键和字段都与原表不同 */
+    @Table("book")
+    static class BookV3 {
+        @Column(value = "isbn", isPrimary = true)
+        String isbn;
+        @Column("price")
+        double price;
+    }
+
+    private DBManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new DBManager(SQLiteDatabase.create(null));
+        manager.createTables(null, BookV1.class);
+        BookV1 book = new BookV1();
+        book.id = 1;
+        book.name = "SQLite";
+        manager.insert(book);
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void addAndRenameColumnsKeepData() {
+        manager.createTables(null, BookV2.class);
+
+        List<BookV2> list = manager.query(BookV2.class);
+        assertEquals(1, list.size());
+        assertEquals(1, list.get(0).id);
+        assertEquals("SQLite", list.get(0).title);
+        assertEquals(0, list.get(0).pages);
+        assertEquals(1, manager.getCount(Query.of(BookV2.class).eq("pages", 0)));
+    }
+
+    @Test
+    public void incompatibleTableIsBackedUp() {
+        manager.createTables(null, BookV3.class);
+        assertTrue(manager.isEmpty(BookV3.class));
+
+        Cursor cursor = manager.rawQuery("SELECT name FROM sqlite_master WHERE type='table' AND name LIKE 'book_backup_%'", null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            String backup = cursor.getString(0);
+            Cursor rows = manager.rawQuery("SELECT name FROM " + backup, null);
+            try {
+                assertTrue(rows.moveToFirst());
+                assertEquals("SQLite", rows.getString(0));
+            } finally {
+                rows.close();
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void onlyLatestBackupKept() {
+        manager.createTables(null, BookV3.class);
+        manager.createTables(null, BookV1.class);
+        assertEquals(1, countBackups());
+
+        List<String> dropped = manager.dropBackupTables(BookV1.class);
+        assertEquals(1, dropped.size());
+        assertTrue(dropped.get(0).startsWith("book_backup_"));
+        assertEquals(0, countBackups());
+    }
+
+    private int countBackups() {
+        Cursor cursor = manager.rawQuery("SELECT name FROM sqlite_master WHERE type='table' AND name LIKE 'book_backup_%'", null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void unchangedTableIsNotMigrated() {
+        manager.createTables(null, BookV1.class);
+        assertEquals(1, manager.getCount(BookV1.class));
+    }
+}
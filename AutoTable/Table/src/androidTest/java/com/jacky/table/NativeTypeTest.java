@@ -0,0 +1,113 @@
+package com.jacky.table;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * 字段按原生类型保存，旧版本以字符串保存的数据在升级时转换
+ */
+@RunWith(AndroidJUnit4.class)
+public class NativeTypeTest {
+
+    @Table("member")
+    static class Member {
+        @Column(value = "id", isPrimary = true)
+        int id;
+        @Column("age")
+        int age;
+        @Column("vip")
+        boolean vip;
+        @Column("score")
+        double score;
+        @Column("name")
+        String name;
+    }
+
+    private DBManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new DBManager(SQLiteDatabase.create(null));
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void valuesStoredAsNativeTypes() {
+        manager.createTables(null, Member.class);
+        Member member = new Member();
+        member.id = 1;
+        member.age = 18;
+        member.vip = true;
+        member.score = 0.5;
+        member.name = "a";
+        manager.insert(member);
+
+        assertArrayEquals(new String[]{"integer", "integer", "real", "text"},
+                queryTypes("SELECT typeof(age),typeof(vip),typeof(score),typeof(name) FROM member"));
+        assertEquals(1, manager.getCount(Query.of(Member.class).eq("age", 18).eq("vip", true).gt("score", 0.4)));
+    }
+
+    @Test
+    public void legacyValuesConverted() {
+        //旧版本的建表语句和写入的数据：默认值都为 ''，boolean 保存为 'true'/'false'
+        manager.execSQL("CREATE TABLE IF NOT EXISTS 'member'(id INTEGER PRIMARY KEY,age INT DEFAULT '',"
+                + "vip BOOLEAN DEFAULT '',score DOUBLE DEFAULT '',name TEXT DEFAULT '')");
+        manager.execSQL("INSERT INTO member(id,vip,name) VALUES (1,'true','a')");
+        manager.execSQL("INSERT INTO member(id,age,vip,score,name) VALUES (2,20,'false',1.5,'b')");
+
+        manager.createTables(null, Member.class);
+
+        assertArrayEquals(new String[]{"integer", "integer", "real"},
+                queryTypes("SELECT typeof(age),typeof(vip),typeof(score) FROM member WHERE id=1"));
+        assertEquals(1, manager.getCount(Query.of(Member.class).eq("age", 0).eq("vip", true)));
+        assertEquals(1, manager.getCount(Query.of(Member.class).eq("vip", false).eq("score", 1.5)));
+
+        //只有旧版本的默认值不同时不重建表，保留原来的默认值
+        assertEquals("''", queryDefault("age"));
+        Member member = new Member();
+        member.id = 3;
+        manager.insert(member);
+        assertArrayEquals(new String[]{"integer", "integer"},
+                queryTypes("SELECT typeof(age),typeof(vip) FROM member WHERE id=3"));
+    }
+
+    private String queryDefault(String column) {
+        Cursor cursor = manager.rawQuery("PRAGMA table_info(member)", null);
+        try {
+            while(cursor.moveToNext()) {
+                if(column.equals(cursor.getString(cursor.getColumnIndex("name")))) {
+                    return cursor.getString(cursor.getColumnIndex("dflt_value"));
+                }
+            }
+            return null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private String[] queryTypes(String sql) {
+        Cursor cursor = manager.rawQuery(sql, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            String[] types = new String[cursor.getColumnCount()];
+            for(int i = 0; i < types.length; i++) {
+                types[i] = cursor.getString(i);
+            }
+            return types;
+        } finally {
+            cursor.close();
+        }
+    }
+}
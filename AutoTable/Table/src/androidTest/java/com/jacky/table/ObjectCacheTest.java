@@ -0,0 +1,93 @@
+package com.jacky.table;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * queryById 的对象缓存，写入后不能再返回旧的对象
+ */
+@RunWith(AndroidJUnit4.class)
+public class ObjectCacheTest {
+
+    @Table("user")
+    static class User {
+        @Column(value = "id", isPrimary = true)
+        String id;
+        @Column("score")
+        int score;
+
+        User() {}
+
+        User(String id, int score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    private DBManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new DBManager(SQLiteDatabase.create(null));
+        manager.createTables(null, User.class);
+        manager.enableObjectCache(User.class, 16);
+        manager.insert(new User("a", 1));
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void returnsCachedObject() {
+        User user = manager.queryById(User.class, "a");
+        assertSame(user, manager.queryById(User.class, "a"));
+    }
+
+    @Test
+    public void replaceIntoInvalidates() {
+        User cached = manager.queryById(User.class, "a");
+        manager.replaceInto(new User("a", 2));
+
+        User user = manager.queryById(User.class, "a");
+        assertNotSame(cached, user);
+        assertEquals(2, user.score);
+    }
+
+    @Test
+    public void updateInvalidates() {
+        User cached = manager.queryById(User.class, "a");
+        manager.update(new User("a", 3));
+
+        assertNotSame(cached, manager.queryById(User.class, "a"));
+        assertEquals(3, manager.queryById(User.class, "a").score);
+    }
+
+    @Test
+    public void deleteInvalidates() {
+        manager.queryById(User.class, "a");
+        manager.deleteByID(User.class, "a");
+        assertNull(manager.queryById(User.class, "a"));
+    }
+
+    @Test
+    public void rollbackClearsCache() {
+        manager.beginTransaction();
+        try {
+            manager.update(new User("a", 4));
+            //事务中查询到的是未提交的数据
+            assertEquals(4, manager.queryById(User.class, "a").score);
+        } finally {
+            manager.endTransaction();
+        }
+        assertEquals(1, manager.queryById(User.class, "a").score);
+    }
+}
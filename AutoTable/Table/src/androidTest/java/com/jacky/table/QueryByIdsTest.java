@@ -0,0 +1,95 @@
+package com.jacky.table;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 按主键批量查询、删除
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryByIdsTest {
+
+    @Table("item")
+    static class Item {
+        @Column(value = "id", isPrimary = true)
+        long id;
+        @Column("name")
+        String name;
+
+        Item() {}
+
+        Item(long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    private DBManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new DBManager(SQLiteDatabase.create(null));
+        manager.createTables(null, Item.class);
+        List<Item> list = new ArrayList<Item>();
+        for(int i = 1; i <= 1200; i++) {
+            list.add(new Item(i, "item" + i));
+        }
+        manager.insert(list);
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void keysMatchedByNativeValue() {
+        Map<Object, Item> map = manager.queryByIds(Item.class, Arrays.<Object>asList(7, 8L, "009", 5000));
+        assertEquals(3, map.size());
+        assertEquals("item7", map.get(7).name);
+        assertEquals("item8", map.get(8L).name);
+        assertEquals("item9", map.get("009").name);
+        assertNull(map.get(5000));
+    }
+
+    @Test
+    public void resultInRequestOrder() {
+        Map<Long, Item> map = manager.queryByIds(Item.class, Arrays.asList(3L, 1L, 2L));
+        assertArrayEquals(new Object[]{3L, 1L, 2L}, map.keySet().toArray());
+    }
+
+    @Test
+    public void moreIdsThanVariableLimit() {
+        List<Long> ids = new ArrayList<Long>();
+        for(long i = 1; i <= 1200; i++) {
+            ids.add(i);
+        }
+        assertEquals(1200, manager.queryByIds(Item.class, ids).size());
+        assertEquals(1200, manager.deleteByIDs(Item.class, ids));
+        assertTrue(manager.isEmpty(Item.class));
+    }
+
+    @Test
+    public void deleteInvalidatesByNativeKey() {
+        manager.enableObjectCache(Item.class, 16);
+        Item cached = manager.queryById(Item.class, "7");
+        assertSame(cached, manager.queryById(Item.class, "007"));
+
+        assertEquals(1, manager.deleteByIDs(Item.class, Arrays.<Object>asList("007")));
+        assertNull(manager.queryById(Item.class, "7"));
+        assertEquals(1, manager.deleteByIDs(Item.class, Arrays.<Object>asList(8.0)));
+        assertNull(manager.queryByIds(Item.class, Arrays.asList(8L)).get(8L));
+    }
+}
@@ -0,0 +1,85 @@
+package com.jacky.table;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * 流式查询，复用对象时不能保留上一行的值
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryResultTest {
+
+    enum Level { LOW, HIGH }
+
+    @Table("record")
+    static class Record {
+        @Column(value = "id", isPrimary = true)
+        String id;
+        @Column("count")
+        Integer count;
+        @Column("level")
+        Level level;
+        @Column(value = "grade", enumType = EnumType.ORDINAL)
+        Level grade;
+        @Column("data")
+        byte[] data;
+
+        Record() {}
+
+        Record(String id) {
+            this.id = id;
+        }
+    }
+
+    private DBManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new DBManager(SQLiteDatabase.create(null));
+        manager.createTables(null, Record.class);
+        Record full = new Record("a");
+        full.count = 1;
+        full.level = Level.HIGH;
+        full.grade = Level.HIGH;
+        full.data = new byte[]{1};
+        manager.insert(full, new Record("b"));
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void reusedObjectClearsNullColumns() {
+        QueryResult<Record> result = manager.iterateByWhere(Record.class, "1=1 ORDER BY id", null, true);
+        try {
+            Record a = result.next();
+            assertEquals(Integer.valueOf(1), a.count);
+            assertSame(Level.HIGH, a.grade);
+
+            Record b = result.next();
+            assertSame(a, b);
+            assertEquals("b", b.id);
+            assertNull(b.count);
+            assertNull(b.level);
+            assertNull(b.grade);
+            assertNull(b.data);
+            assertFalse(result.hasNext());
+        } finally {
+            result.close();
+        }
+    }
+
+    @Test
+    public void nullBoxedNumberIsNull() {
+        assertNull(manager.queryById(Record.class, "b").count);
+    }
+}
@@ -0,0 +1,90 @@
+package com.jacky.table;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 慢查询在 Cursor 第一次使用时计时，只标记大表的全表扫描
+ */
+@RunWith(AndroidJUnit4.class)
+public class SlowQueryTest {
+
+    @Table(value = "log", autoId = true)
+    static class Log {
+        @Column(value = "id", isPrimary = true)
+        long id;
+        @Column("tag")
+        String tag;
+
+        Log() {}
+
+        Log(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private DBManager manager;
+    private final List<SlowQueryReport> reports = new ArrayList<SlowQueryReport>();
+
+    @Before
+    public void setUp() {
+        manager = new DBManager(SQLiteDatabase.create(null));
+        manager.createTables(null, Log.class);
+        List<Log> list = new ArrayList<Log>();
+        for(int i = 0; i < 20; i++) {
+            list.add(new Log("tag" + i));
+        }
+        manager.insert(list);
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    private void listen(long minScanRows) {
+        manager.setSlowQueryListener(new SlowQueryListener() {
+            @Override
+            public void onSlowQuery(SlowQueryReport report) {
+                reports.add(report);
+            }
+        }, 0, 0, minScanRows);
+    }
+
+    @Test
+    public void timedOnFirstUse() {
+        listen(0);
+        Cursor cursor = manager.getQueryCursor(Log.class, "tag=?", new String[]{"tag1"});
+        try {
+            assertTrue(reports.isEmpty());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(1, reports.size());
+            cursor.moveToNext();
+            assertEquals(1, reports.size());
+        } finally {
+            cursor.close();
+        }
+        assertTrue(reports.get(0).hasFullScan());
+        assertEquals("log", reports.get(0).getFullScanTables().get(0));
+    }
+
+    @Test
+    public void smallTableScanNotFlagged() {
+        listen(SlowQueryDetector.DEFAULT_MIN_SCAN_ROWS);
+        manager.queryByWhere(Log.class, "tag=?", new String[]{"tag1"});
+        assertEquals(1, reports.size());
+        assertFalse(reports.get(0).hasFullScan());
+        assertFalse(reports.get(0).getPlan().isEmpty());
+    }
+}
@@ -0,0 +1,109 @@
+package com.jacky.table;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * 通过 SAVEPOINT 实现的嵌套事务
+ */
+@RunWith(AndroidJUnit4.class)
+public class TransactionTest {
+
+    @Table("account")
+    static class Account {
+        @Column(value = "id", isPrimary = true)
+        String id;
+        @Column("balance")
+        long balance;
+
+        Account() {}
+
+        Account(String id, long balance) {
+            this.id = id;
+            this.balance = balance;
+        }
+    }
+
+    private DBManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new DBManager(SQLiteDatabase.create(null));
+        manager.createTables(null, Account.class);
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void failedNestedTransactionOnlyRollsBackItself() {
+        manager.beginTransaction();
+        try {
+            manager.insert(new Account("a", 1));
+            try {
+                manager.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        manager.insert(new Account("b", 2));
+                        throw new IllegalStateException("rollback b");
+                    }
+                });
+                fail();
+            } catch (IllegalStateException e) {
+                //只回滚嵌套事务
+            }
+            assertTrue(manager.inTransaction());
+            manager.setTransactionSuccessful();
+        } finally {
+            manager.endTransaction();
+        }
+
+        assertEquals(1, manager.getCount(Account.class));
+        assertNotNull(manager.queryById(Account.class, "a"));
+        assertNull(manager.queryById(Account.class, "b"));
+    }
+
+    @Test
+    public void nestedCommitIsRolledBackWithOuter() {
+        manager.beginTransaction();
+        try {
+            manager.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    manager.insert(new Account("a", 1));
+                }
+            });
+            //外层没有标记成功
+        } finally {
+            manager.endTransaction();
+        }
+
+        assertFalse(manager.inTransaction());
+        assertTrue(manager.isEmpty(Account.class));
+    }
+
+    @Test
+    public void deepNesting() {
+        manager.beginTransaction();
+        for(int i = 0; i < 20; i++) {
+            manager.beginTransaction();
+        }
+        manager.insert(new Account("a", 1));
+        for(int i = 0; i <= 20; i++) {
+            manager.setTransactionSuccessful();
+            manager.endTransaction();
+        }
+
+        assertFalse(manager.inTransaction());
+        assertEquals(1, manager.getCount(Account.class));
+    }
+}
@@ -0,0 +1,373 @@
+package com.jacky.table;
+
+import android.content.Context;
+
+import com.jacky.log.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DBManager 的异步封装，所有操作都在后台线程执行，结果通过 Future 或者 Callback 返回。
+ * 写操作在唯一的写线程上按提交顺序执行，连续提交的写操作合并在同一个事务中；
+ * 查询在读线程池中执行，DBManager 为并发模式时多个查询可以与写操作同时进行
+ */
+public final class AsyncDBManager {
+
+    /**
+     * 在后台线程中执行的数据库操作
+     * @param <T> 操作结果的类型
+     */
+    public interface Task<T> {
+        T run(DBManager manager) throws Exception;
+    }
+
+    /**
+     * 操作结果的回调，在构造时指定的 callbackExecutor 中执行，没有指定时在数据库线程中执行
+     * @param <T>
+     */
+    public interface Callback<T> {
+        void onSuccess(T result);
+
+        void onError(Throwable e);
+    }
+
+    /** 合并在一个事务中的最多写操作数 */
+    private static final int MAX_BATCH_TASKS = 64;
+    /** 并发模式下默认的读线程数 */
+    private static final int DEFAULT_READERS = 4;
+
+    private final DBManager mManager;
+    private final ExecutorService mWriter;
+    private final ExecutorService mReaders;
+    private final Executor mCallbackExecutor;
+    /** 等待写线程执行的写操作 */
+    private final LinkedList<Job<?>> mPendingWrites = new LinkedList<Job<?>>();
+    /** 写线程是否已经安排了 drainWrites */
+    private boolean isDraining;
+
+    /**
+     * @param manager
+     * @see #AsyncDBManager(DBManager, int, Executor)
+     */
+    public AsyncDBManager(DBManager manager) {
+        this(manager, manager.isConcurrent() ? DEFAULT_READERS : 1, null);
+    }
+
+    /**
+     * @param manager
+     * @param readerCount 读线程数，DBManager 不是并发模式时查询依然会排队使用同一个连接
+     * @param callbackExecutor 执行回调的线程，如主线程的 Handler；为 null 时回调在数据库线程中执行
+     */
+    public AsyncDBManager(DBManager manager, int readerCount, Executor callbackExecutor) {
+        if(manager == null) {
+            throw new NullPointerException("manager is null.");
+        }
+        mManager = manager;
+        mCallbackExecutor = callbackExecutor;
+        mWriter = Executors.newSingleThreadExecutor(new NamedThreadFactory("AutoTable-writer"));
+        mReaders = Executors.newFixedThreadPool(Math.max(1, readerCount), new NamedThreadFactory("AutoTable-reader"));
+    }
+
+    public DBManager getManager() {
+        return mManager;
+    }
+
+    /**
+     * 提交一个写操作。连续提交的写操作会合并在同一个事务中执行，
+     * 每个操作都是其中的嵌套事务，失败的操作只回滚自己的修改，不会影响其他操作。
+     * shutdown 之后提交的操作直接以 RejectedExecutionException 失败
+     */
+    public <T> Future<T> write(Task<T> task, Callback<T> callback) {
+        Job<T> job = new Job<T>(task, callback);
+        boolean schedule;
+        synchronized (mPendingWrites) {
+            mPendingWrites.add(job);
+            schedule = !isDraining;
+            isDraining = true;
+        }
+        if(schedule) {
+            try {
+                mWriter.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        drainWrites();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                //没有线程会再执行等待的写操作，全部失败，之后的提交也会重新尝试
+                List<Job<?>> rejected;
+                synchronized (mPendingWrites) {
+                    rejected = new ArrayList<Job<?>>(mPendingWrites);
+                    mPendingWrites.clear();
+                    isDraining = false;
+                }
+                for(Job<?> pending : rejected) {
+                    pending.fail(e);
+                }
+            }
+        }
+        return job;
+    }
+
+    /**
+     * 提交一个查询操作，在读线程池中执行。
+     * 与 write 一样，shutdown 之后提交的操作直接以 RejectedExecutionException 失败
+     */
+    public <T> Future<T> read(Task<T> task, Callback<T> callback) {
+        Job<T> job = new Job<T>(task, callback);
+        try {
+            mReaders.execute(job);
+        } catch (RejectedExecutionException e) {
+            job.fail(e);
+        }
+        return job;
+    }
+
+    public Future<Void> createTables(final Context context, final Class<?>... classes) {
+        return write(new Task<Void>() {
+            @Override
+            public Void run(DBManager manager) {
+                manager.createTables(context, classes);
+                return null;
+            }
+        }, null);
+    }
+
+    public <T> Future<Void> insert(final List<T> list, Callback<Void> callback) {
+        return write(new Task<Void>() {
+            @Override
+            public Void run(DBManager manager) {
+                manager.insert(list);
+                return null;
+            }
+        }, callback);
+    }
+
+    public <T> Future<Void> replaceInto(final List<T> list, Callback<Void> callback) {
+        return write(new Task<Void>() {
+            @Override
+            public Void run(DBManager manager) {
+                manager.replaceInto(list);
+                return null;
+            }
+        }, callback);
+    }
+
+    public <T> Future<Void> update(final List<T> list, Callback<Void> callback) {
+        return write(new Task<Void>() {
+            @Override
+            public Void run(DBManager manager) {
+                manager.update(list.toArray());
+                return null;
+            }
+        }, callback);
+    }
+
+    public <T> Future<Void> delete(final List<T> list, Callback<Void> callback) {
+        return write(new Task<Void>() {
+            @Override
+            public Void run(DBManager manager) {
+                manager.delete(list.toArray());
+                return null;
+            }
+        }, callback);
+    }
+
+    public Future<Void> deleteAll(final Class<?> clazz, Callback<Void> callback) {
+        return write(new Task<Void>() {
+            @Override
+            public Void run(DBManager manager) {
+                manager.deleteAll(clazz);
+                return null;
+            }
+        }, callback);
+    }
+
+    public <T> Future<List<T>> query(final Class<T> clazz, Callback<List<T>> callback) {
+        return read(new Task<List<T>>() {
+            @Override
+            public List<T> run(DBManager manager) {
+                return manager.query(clazz);
+            }
+        }, callback);
+    }
+
+    public <T> Future<T> queryById(final Class<T> clazz, final String id, Callback<T> callback) {
+        return read(new Task<T>() {
+            @Override
+            public T run(DBManager manager) {
+                return manager.queryById(clazz, id);
+            }
+        }, callback);
+    }
+
+    public <T> Future<List<T>> queryByWhere(final Class<T> clazz, final String whereClause, final String[] whereArgs,
+                                            Callback<List<T>> callback) {
+        return read(new Task<List<T>>() {
+            @Override
+            public List<T> run(DBManager manager) {
+                return manager.queryByWhere(clazz, whereClause, whereArgs);
+            }
+        }, callback);
+    }
+
+    public Future<Integer> getCount(final Class<?> clazz, Callback<Integer> callback) {
+        return read(new Task<Integer>() {
+            @Override
+            public Integer run(DBManager manager) {
+                return manager.getCount(clazz);
+            }
+        }, callback);
+    }
+
+    /**
+     * 不再接收新的操作，已提交的操作执行完后结束后台线程。不会关闭 DBManager
+     */
+    public void shutdown() {
+        mWriter.shutdown();
+        mReaders.shutdown();
+    }
+
+    /**
+     * 在写线程中执行所有等待的写操作，每次最多 MAX_BATCH_TASKS 个合并在一个事务中
+     */
+    private void drainWrites() {
+        while (true) {
+            List<Job<?>> batch = new ArrayList<Job<?>>();
+            synchronized (mPendingWrites) {
+                while(!mPendingWrites.isEmpty() && batch.size() < MAX_BATCH_TASKS) {
+                    Job<?> job = mPendingWrites.removeFirst();
+                    if(!job.isCancelled()) batch.add(job);
+                }
+                if(batch.isEmpty() && mPendingWrites.isEmpty()) {
+                    isDraining = false;
+                    return;
+                }
+            }
+            if(batch.size() == 1) {
+                batch.get(0).run();
+            } else if(!batch.isEmpty()) {
+                runBatch(batch);
+            }
+        }
+    }
+
+    private void runBatch(final List<Job<?>> batch) {
+        try {
+            //每个写操作都是一个嵌套事务，失败时只回滚该操作的修改
+            mManager.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    for(Job<?> job : batch) {
+                        job.execute();
+                    }
+                }
+            });
+        } catch (Throwable e) {
+            Logger.e(e);
+            for(Job<?> job : batch) {
+                job.fail(e);
+            }
+            return;
+        }
+        for(Job<?> job : batch) {
+            job.complete();
+        }
+    }
+
+    private final class Job<T> extends FutureTask<T> {
+
+        private final Task<T> task;
+        private final Callback<T> callback;
+        /** 在批量事务中执行的结果，事务提交后才设置到 Future 中 */
+        private T result;
+        private Throwable error;
+
+        Job(final Task<T> task, Callback<T> callback) {
+            super(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return task.run(mManager);
+                }
+            });
+            this.task = task;
+            this.callback = callback;
+        }
+
+        /**
+         * 在外层的批量事务中作为嵌套事务执行
+         */
+        void execute() {
+            mManager.beginTransaction();
+            try {
+                result = task.run(mManager);
+                mManager.setTransactionSuccessful();
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                mManager.endTransaction();
+            }
+        }
+
+        void complete() {
+            if(error == null) {
+                set(result);
+            } else {
+                setException(error);
+            }
+        }
+
+        void fail(Throwable e) {
+            setException(e);
+        }
+
+        @Override
+        protected void done() {
+            if(callback == null || isCancelled()) return;
+            Runnable runnable = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        callback.onSuccess(get());
+                    } catch (ExecutionException e) {
+                        callback.onError(e.getCause());
+                    } catch (InterruptedException e) {
+                        callback.onError(e);
+                    }
+                }
+            };
+            if(mCallbackExecutor == null) {
+                runnable.run();
+            } else {
+                mCallbackExecutor.execute(runnable);
+            }
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, name + '-' + count.incrementAndGet());
+        }
+    }
+}
@@ -45,4 +45,22 @@ public @interface Column {
 	 * @return
 	 */
 	String defValue() default "";
+
+	/**
+	 * 字段原来的名称。修改字段名称时设置，升级表结构时通过 RENAME COLUMN 保留原有数据
+	 * @return
+	 */
+	String oldName() default "";
+
+	/**
+	 * 该字段使用的类型转换器，需要有无参的构造函数。为 TypeConverter.class 时按成员类型查找已注册的转换器
+	 * @return
+	 */
+	@SuppressWarnings("rawtypes")
+	Class<? extends TypeConverter> converter() default TypeConverter.class;
+	/**
+	 * 枚举成员的保存方式，默认保存名称。ORDINAL 时 set 函数的参数为枚举类型，已有的字段不会转换原来的数据
+	 * @return
+	 */
+	EnumType enumType() default EnumType.NAME;
 }
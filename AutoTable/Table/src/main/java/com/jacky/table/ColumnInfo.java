@@ -0,0 +1,403 @@
+package com.jacky.table;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteProgram;
+
+import com.jacky.log.Logger;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * 成员变量与表字段之间的映射信息。
+ * Field、Method 等反射对象只在创建时解析一次，之后所有读写都复用
+ */
+final class ColumnInfo {
+
+    final Column column;
+    /** 表字段名称 */
+    final String name;
+    final Field field;
+    final Class<?> fieldType;
+    final boolean isPrimary;
+    /** 字段的数据库类型，不支持映射的类型为 null */
+    private final DBType type;
+    /** Column.get() 对应的函数，未设置或者找不到时为 null */
+    private final Method getter;
+    /** Column.set() 对应的函数，未设置或者找不到时为 null */
+    private final Method setter;
+    /** 是否通过 Column.get() 函数取值 */
+    private final boolean byGetter;
+    /** 是否通过 Column.set() 函数设值 */
+    private final boolean bySetter;
+    /** 设置到对象中的值的类型，即 set 函数的参数类型或者成员的类型 */
+    private final Class<?> valueType;
+    /** 成员类型与数据库类型之间的转换器，不需要转换时为 null */
+    private final TypeConverter<Object, Object> converter;
+    /** 从数据库中读取出来的值的类型，没有转换器时与 valueType 相同 */
+    private final Class<?> storageType;
+    /** 编译期生成的映射器，没有时通过反射读写 */
+    private RowMapper<Object> mapper;
+    private int mapperIndex;
+
+    ColumnInfo(Class<?> clazz, Field field, Column column) {
+        this.column = column;
+        this.name = column.value();
+        this.field = field;
+        this.fieldType = field.getType();
+        this.isPrimary = column.isPrimary();
+
+        //指定了转换器，或者成员的类型不能直接映射时，使用转换器
+        DBType nativeType = getNativeType(fieldType);
+        if(column.converter() == TypeConverter.class && fieldType.isEnum()
+                && column.enumType() == EnumType.ORDINAL) {
+            this.converter = EnumConverter.of(fieldType, EnumType.ORDINAL);
+        } else {
+            this.converter = column.converter() != TypeConverter.class || nativeType == null ?
+                    TypeConverters.resolve(column, fieldType) : null;
+        }
+        if(column.type() != DBType.NONE) {
+            this.type = column.type();
+        } else {
+            this.type = converter != null ? converter.getDBType() : nativeType;
+        }
+
+        field.setAccessible(true);
+        byGetter = column.get().length() > 0;
+        bySetter = column.set().length() > 0;
+        if(converter != null) {
+            valueType = fieldType;
+            storageType = getStorageType(converter.getDBType());
+        } else {
+            valueType = bySetter ? getSetterType(type) : fieldType;
+            storageType = valueType;
+        }
+        getter = byGetter ? findMethod(clazz, column.get()) : null;
+        setter = bySetter ? findMethod(clazz, column.set(), valueType) : null;
+    }
+
+    /**
+     * 使用编译期生成的映射器来读写成员，只在 TableInfo 初始化时调用
+     * @param index 该字段在 mapper.columns() 中的下标
+     */
+    void setMapper(RowMapper<Object> mapper, int index) {
+        this.mapper = mapper;
+        this.mapperIndex = index;
+    }
+
+    /**
+     * @return 字段的数据库类型
+     * @throws DatabaseException 该成员的类型不支持映射
+     */
+    DBType getDBType() {
+        if(type == null) {
+            throw new DatabaseException(fieldType + " no support to mapping.");
+        }
+        return type;
+    }
+
+    /**
+     * 获取成员的原始值
+     */
+    Object getValue(Object t) throws Exception {
+        if(mapper != null) return mapper.getValue(t, mapperIndex);
+        if(byGetter) return getter == null ? null : getter.invoke(t);
+        return field.get(t);
+    }
+
+    /**
+     * 获取保存到数据库中的值，有转换器时为转换后的值，失败时返回 null
+     */
+    Object getDatabaseValue(Object t) {
+        try {
+            return toDatabase(getValue(t));
+        } catch (Exception e) {
+            Logger.e(e);
+            return null;
+        }
+    }
+
+    /**
+     * 有转换器时把成员类型的值转换成保存到数据库中的值，其他值保持不变
+     */
+    Object toDatabase(Object value) {
+        return converter == null || !fieldType.isInstance(value) ? value : converter.toDatabase(value);
+    }
+
+    /**
+     * 按原生类型将成员的值放入 values：整数、boolean 为 INTEGER，浮点数为 REAL，其他为 TEXT。
+     * 通过 get 函数取值失败或者结果为 null 时不放入；成员的值为 null 时放入 NULL
+     */
+    void putValue(ContentValues values, Object t) {
+        Object value;
+        try {
+            value = toDatabase(getValue(t));
+        } catch (Exception e) {
+            Logger.e(e);
+            return;
+        }
+
+        if(value == null) {
+            if(!byGetter) values.putNull(name);
+        } else if(value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            values.put(name, ((Number) value).longValue());
+        } else if(value instanceof Double || value instanceof Float) {
+            values.put(name, ((Number) value).doubleValue());
+        } else if(value instanceof Boolean) {
+            values.put(name, (Boolean) value ? 1 : 0);
+        } else if(value instanceof byte[]) {
+            values.put(name, (byte[]) value);
+        } else if(value instanceof ByteBuffer) {
+            values.put(name, toBytes((ByteBuffer) value));
+        } else {
+            values.put(name, value.toString());
+        }
+    }
+
+    /**
+     * 获取成员的值，并转换成字符串
+     * @param t
+     * @return 通过 get 函数取值失败或者结果为 null 时返回 null；成员的值为 null 时返回空字符串
+     */
+    String getString(Object t) {
+        try {
+            Object obj = toDatabase(getValue(t));
+            if(obj == null) return byGetter ? null : "";
+            return obj.toString();
+        } catch (Exception e) {
+            Logger.e(e);
+            return null;
+        }
+    }
+
+    /**
+     * 按成员的原生类型将值绑定到预编译语句上，null 值绑定为 NULL
+     * @param program
+     * @param index 参数位置，从 1 开始
+     * @param t
+     */
+    void bind(SQLiteProgram program, int index, Object t) {
+        bindValue(program, index, getDatabaseValue(t));
+    }
+
+    /**
+     * 按值的原生类型绑定到预编译语句上，与写入数据时使用的类型一致：
+     * 整数、boolean 为 INTEGER，浮点数为 REAL，其他为 TEXT，null 值绑定为 NULL
+     */
+    static void bindValue(SQLiteProgram program, int index, Object value) {
+        if(value == null) {
+            program.bindNull(index);
+        } else if(value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            program.bindLong(index, ((Number) value).longValue());
+        } else if(value instanceof Double || value instanceof Float) {
+            program.bindDouble(index, ((Number) value).doubleValue());
+        } else if(value instanceof Boolean) {
+            program.bindLong(index, (Boolean) value ? 1 : 0);
+        } else if(value instanceof byte[]) {
+            program.bindBlob(index, (byte[]) value);
+        } else if(value instanceof ByteBuffer) {
+            program.bindBlob(index, toBytes((ByteBuffer) value));
+        } else {
+            program.bindString(index, value.toString());
+        }
+    }
+
+    /**
+     * 将 cursor 中当前行 index 位置的数据设置到对象中
+     * @param clearNull 字段为空时是否清空成员（引用类型为 null，基本类型为 0、false），
+     *                  复用对象时需要清空，否则会保留上一行的值；新建的对象保留成员的初始值
+     */
+    void read(Object t, Cursor cursor, int index, boolean clearNull) {
+        if(storageType == null) return;
+        try {
+            Object value;
+            if(converter != null) {
+                value = cursor.isNull(index) ? null : readValue(storageType, cursor, index);
+                if(value != null) value = converter.fromDatabase(value);
+            } else {
+                value = readValue(valueType, cursor, index);
+            }
+            if(value == null) {
+                if(!clearNull && valueType != String.class) return;
+                value = getEmptyValue(valueType);
+            }
+            setRawValue(t, value);
+        } catch (Exception e) {
+            Logger.w(field);
+            Logger.e(e);
+        }
+    }
+
+    /**
+     * @return 成员的空值，基本类型不能设置为 null
+     */
+    private static Object getEmptyValue(Class<?> type) {
+        if(!type.isPrimitive()) return null;
+        if(type == Boolean.TYPE) return false;
+        if(type == Character.TYPE) return '\0';
+        if(type == Integer.TYPE) return 0;
+        if(type == Long.TYPE) return 0L;
+        if(type == Double.TYPE) return 0d;
+        if(type == Float.TYPE) return 0f;
+        if(type == Short.TYPE) return (short) 0;
+        return (byte) 0;
+    }
+
+    /**
+     * 直接设置成员的值，用于回写自动生成的主键
+     */
+    void setValue(Object t, Object value) {
+        if(valueType == null) return;
+        Class<?> type = valueType;
+        try {
+            if(type == Integer.TYPE || type == Integer.class) {
+                value = Integer.parseInt(value.toString());
+            } else if(type == Long.TYPE || type == Long.class) {
+                value = Long.parseLong(value.toString());
+            } else if(type == String.class) {
+                value = value.toString();
+            }
+            setRawValue(t, value);
+        } catch (Exception e) {
+            Logger.w(field);
+            Logger.e(e);
+        }
+    }
+
+    private void setRawValue(Object t, Object value) throws Exception {
+        if(mapper != null) {
+            mapper.setValue(t, mapperIndex, value);
+        } else if(bySetter) {
+            if(setter != null) setter.invoke(t, value);
+        } else {
+            field.set(t, value);
+        }
+    }
+
+    /**
+     * 按照 type 类型读取 cursor 中的数据
+     * @return 字段为 NULL 且 type 不是基本类型、不支持的类型或者没有匹配的枚举值时返回 null
+     */
+    private static Object readValue(Class<?> type, Cursor cursor, int index) {
+        //包装类型的 NULL 读取为 null，而不是 getInt 等返回的 0
+        if(!type.isPrimitive() && cursor.isNull(index)) return null;
+        if(type == Integer.TYPE || type == Integer.class) {
+            return cursor.getInt(index);
+        } else if(type == Long.TYPE || type == Long.class) {
+            return cursor.getLong(index);
+        } else if(type == String.class) {
+            return cursor.getString(index);
+        } else if(type == Character.TYPE || type == Character.class) {
+            String s = cursor.getString(index);
+            return s == null || s.length() == 0 ? null : s.charAt(0);
+        } else if(type == Double.TYPE || type == Double.class) {
+            return cursor.getDouble(index);
+        } else if(type == Boolean.TYPE || type == Boolean.class) {
+            String v = cursor.getString(index);
+            return "1".equals(v) ? true : Boolean.parseBoolean(v);
+        } else if(type == Float.TYPE || type == Float.class) {
+            return cursor.getFloat(index);
+        } else if(type == Short.TYPE || type == Short.class) {
+            return cursor.getShort(index);
+        } else if(type == Byte.TYPE || type == Byte.class) {
+            return (byte) cursor.getInt(index);
+        } else if(type.isEnum()) {
+            String s = cursor.getString(index);
+            return s == null ? null : EnumConverter.of(type, EnumType.NAME).fromDatabase(s);
+        } else if(type == byte[].class) {
+            return cursor.getBlob(index);
+        } else if(type == ByteBuffer.class) {
+            byte[] blob = cursor.getBlob(index);
+            return blob == null ? null : ByteBuffer.wrap(blob);
+        } else {
+            //其他类型需要通过 TypeConverter 转换
+            return null;
+        }
+    }
+
+    /**
+     * @return buffer 中剩余的数据，buffer 正好包装了整个数组时直接返回该数组，不复制
+     */
+    private static byte[] toBytes(ByteBuffer buffer) {
+        if(buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+                && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * @return 可以直接映射的成员类型对应的数据库类型，不支持时返回 null
+     */
+    private static DBType getNativeType(Class<?> type) {
+        if(Integer.TYPE == type || Integer.class == type) return DBType.INT;
+        if(Double.TYPE == type || Double.class == type) return DBType.DOUBLE;
+        if(Character.TYPE == type || Character.class == type) return DBType.CHAR;
+        if(Long.TYPE == type || Long.class == type) return DBType.LONG;
+        if(Short.TYPE == type || Short.class == type) return DBType.INT;
+        if(Float.TYPE == type || Float.class == type) return DBType.FLOAT;
+        if(Boolean.TYPE == type || Boolean.class == type) return DBType.BOOLEAN;
+        if(Byte.TYPE == type || Byte.class == type) return DBType.INT;
+        if(CharSequence.class.isAssignableFrom(type)) return DBType.TEXT;
+        if(type.isEnum()) return DBType.TEXT;
+        if(type == byte[].class || type == ByteBuffer.class) return DBType.BLOB;
+        return null;
+    }
+
+    /**
+     * set 函数的参数类型
+     */
+    private static Class<?> getSetterType(DBType type) {
+        if(type == null) return null;
+        switch (type) {
+            case TEXT : return String.class;
+            case INT : return Integer.TYPE;
+            case DOUBLE : return Double.TYPE;
+            case FLOAT : return Float.TYPE;
+            case BOOLEAN : return Boolean.TYPE;
+            case CHAR : return Character.TYPE;
+            case LONG : return Long.TYPE;
+            case BLOB : return byte[].class;
+            default: return null;
+        }
+    }
+
+    /**
+     * 转换器保存到数据库中的值的类型
+     */
+    private static Class<?> getStorageType(DBType type) {
+        switch (type) {
+            case TEXT :
+            case CHAR : return String.class;
+            case INT : return Integer.class;
+            case DOUBLE : return Double.class;
+            case FLOAT : return Float.class;
+            case BOOLEAN : return Boolean.class;
+            case LONG : return Long.class;
+            case BLOB : return byte[].class;
+            default: return null;
+        }
+    }
+
+    private static Method findMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        for(Class<?> c : parameterTypes) {
+            if(c == null) {
+                Logger.w(clazz, name, "This Field not set type.");
+                return null;
+            }
+        }
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            Logger.w(clazz);
+            Logger.e(e);
+            return null;
+        }
+    }
+}
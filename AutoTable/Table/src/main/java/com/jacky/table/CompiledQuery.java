@@ -0,0 +1,78 @@
+package com.jacky.table;
+
+/**
+ * Query 生成的查询，SQL 语句固定不变，可以保存下来配合新的参数重复执行，
+ * 重复执行时使用同一条预编译语句
+ * @param <T>
+ * @see Query#compile()
+ * @see DBManager#query(CompiledQuery, Object...)
+ */
+public final class CompiledQuery<T> {
+
+    final Class<T> clazz;
+    final TableInfo info;
+    private final String selectSql;
+    private final String countSql;
+    private final String deleteSql;
+    private final Object[] args;
+    /** 每个参数对应的字段，重复执行时新的参数经过字段的转换器；原始条件语句的参数为 null */
+    private final ColumnInfo[] argColumns;
+
+    CompiledQuery(Class<T> clazz, TableInfo info, String selection, String where,
+                  String suffix, boolean hasLimit, Object[] args, ColumnInfo[] argColumns) {
+        this.clazz = clazz;
+        this.info = info;
+        this.args = args;
+        this.argColumns = argColumns;
+
+        String table = info.getName();
+        String whereClause = where.length() == 0 ? "" : " WHERE " + where;
+        selectSql = "SELECT " + selection + " FROM " + table + whereClause + suffix;
+        if(hasLimit) {
+            //排序、分页之后的结果再计数、删除
+            String rows = "SELECT rowid FROM " + table + whereClause + suffix;
+            countSql = "SELECT COUNT(1) FROM (" + rows + ")";
+            deleteSql = "DELETE FROM " + table + " WHERE rowid IN (" + rows + ")";
+        } else {
+            countSql = "SELECT COUNT(1) FROM " + table + whereClause;
+            deleteSql = "DELETE FROM " + table + whereClause;
+        }
+    }
+
+    /**
+     * @return 参数的个数，重复执行时传入的参数个数必须与之相同
+     */
+    public int getArgCount() {
+        return args.length;
+    }
+
+    public String getSql() {
+        return selectSql;
+    }
+
+    String getCountSql() {
+        return countSql;
+    }
+
+    String getDeleteSql() {
+        return deleteSql;
+    }
+
+    /**
+     * @param args 新的参数，为空时使用构造查询时的参数。与构造查询时一样按字段转换，
+     *             如按序号保存的枚举、Date 等
+     * @throws IllegalArgumentException 参数个数不一致
+     */
+    Object[] getArgs(Object[] args) {
+        if(args == null || args.length == 0) return this.args;
+        if(args.length != this.args.length) {
+            throw new IllegalArgumentException("Query needs " + this.args.length + " args, but got " + args.length);
+        }
+        Object[] converted = new Object[args.length];
+        for(int i = 0; i < args.length; i++) {
+            ColumnInfo column = argColumns[i];
+            converted[i] = column == null ? args[i] : column.toDatabase(args[i]);
+        }
+        return converted;
+    }
+}
@@ -0,0 +1,37 @@
+package com.jacky.table;
+
+/**
+ * DBManager 的操作监听，用于统计每张表的耗时。
+ * 回调在执行操作的线程中同步调用，需要尽快返回；回调抛出的异常会被忽略。
+ * 没有设置监听时不会计时
+ * @see DBManager#setListener(DBListener)
+ */
+public interface DBListener {
+
+    enum Operation {
+        INSERT,
+        REPLACE,
+        UPDATE,
+        DELETE,
+        QUERY,
+        /** 新建或者升级表结构 */
+        MIGRATION
+    }
+
+    /**
+     * 一次操作成功完成。在事务中执行时，耗时不包括外层事务的提交
+     * @param operation
+     * @param table 表名
+     * @param rows 写入、删除或者查询出来的记录数，无法统计时为 -1
+     * @param sqliteNanos 执行 SQL 语句的耗时，包括本次操作开启的事务的提交
+     * @param mappingNanos 数据对象与字段值之间转换的耗时
+     */
+    void onOperation(Operation operation, String table, int rows, long sqliteNanos, long mappingNanos);
+
+    /**
+     * 当前线程最外层的事务结束
+     * @param durationNanos 从开启事务到结束的耗时
+     * @param successful 是否提交，否则为回滚
+     */
+    void onTransaction(long durationNanos, boolean successful);
+}
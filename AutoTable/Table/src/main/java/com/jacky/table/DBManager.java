@@ -4,7 +4,12 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.SQLException;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteProgram;
+import android.database.sqlite.SQLiteQuery;
+import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
 
 
@@ -12,25 +17,69 @@ import com.jacky.log.Logger;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 
 /**
- * 数据库操作类，一个实例对象对应一个db文件
+ * 数据库操作类，一个实例对象对应一个db文件。
+ * 实例可以在多个线程之间共享，事务状态按线程分别保存；
+ * 并发模式下开启 WAL，写操作依然串行执行，多个线程的查询可以与写操作同时进行
  */
 public final class DBManager {
 
-    private SQLiteDatabase mDatabase;
-    private boolean isBeginTransaction;
+    private volatile SQLiteDatabase mDatabase;
+    /** 是否为并发模式 */
+    private final boolean mConcurrent;
+    /** 当前线程通过 beginTransaction 开启的事务，没有时为 null */
+    private final ThreadLocal<TransactionState> mTransaction = new ThreadLocal<TransactionState>();
+    /** 开启了对象缓存的类 -> 缓存 */
+    private final ConcurrentHashMap<Class<?>, ObjectCache> mCaches = new ConcurrentHashMap<Class<?>, ObjectCache>();
+    /** 预编译语句的缓存 */
+    private volatile StatementCache mStatements;
+    /** 默认缓存的预编译语句数 */
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+    /** 使用该实例的延迟写入缓冲区，关闭数据库前需要写入 */
+    private final List<WriteBehindBuffer> mBuffers = new CopyOnWriteArrayList<WriteBehindBuffer>();
+    /** 操作监听，为 null 时不计时 */
+    private volatile DBListener mListener;
+    /** 慢查询检查，为 null 时不检查 */
+    private volatile SlowQueryDetector mSlowQuery;
     private static final boolean showLog = BuildConfig.DEBUG;
+    /** INSERT ... ON CONFLICT DO UPDATE 语法需要的 SQLite 版本：3.24.0 */
+    private static final int UPSERT_VERSION = 3024000;
+    /** INSERT ... VALUES 多行写入需要的 SQLite 版本：3.7.11 */
+    private static final int MULTI_VALUES_VERSION = 3007011;
+    /** 3.32.0 开始 SQLITE_MAX_VARIABLE_NUMBER 的默认值由 999 提高到 32766 */
+    private static final int MAX_VARIABLE_VERSION = 3032000;
+    /** 每条多行插入语句最多的行数，旧版本 SQLite 的 VALUES 受 SQLITE_MAX_COMPOUND_SELECT(500) 的限制 */
+    private static final int MAX_BATCH_ROWS = 500;
+    /** ALTER TABLE ... RENAME COLUMN 需要的 SQLite 版本：3.25.0 */
+    private static final int RENAME_COLUMN_VERSION = 3025000;
+    /** ALTER TABLE ... DROP COLUMN 需要的 SQLite 版本：3.35.0 */
+    private static final int DROP_COLUMN_VERSION = 3035000;
+    /** 保存建表语句、索引版本号的表 */
+    private static final String META_TABLE = "jacky_db_meta";
+    private static final String INDEX_SUFFIX = "_INDEX";
+    /** 表中旧的字符串数据已经转换为原生类型的标记 */
+    private static final String NATIVE_SUFFIX = "_NATIVE";
+    /** 数据转换的版本，2 表示数值字段的默认值不再是 '' 且已有的 '' 已转换为字段的默认值 */
+    private static final String NATIVE_VERSION = "2";
+    /** 当前 SQLite 的版本号，0 表示还未查询 */
+    private volatile int mSQLiteVersion;
 
     /**
      *
@@ -38,25 +87,290 @@ public final class DBManager {
      * @param name 数据库文件名
      */
     public DBManager(Context context, String name) {
-        this(context.openOrCreateDatabase(name, Context.MODE_PRIVATE, null));
+        this(context, name, false);
+    }
+
+    /**
+     *
+     * @param context
+     * @param name 数据库文件名
+     * @param concurrent 是否开启并发模式（WAL），后台写入与界面查询可以同时进行
+     */
+    public DBManager(Context context, String name, boolean concurrent) {
+        this(context.openOrCreateDatabase(name, concurrent ?
+                Context.MODE_PRIVATE | Context.MODE_ENABLE_WRITE_AHEAD_LOGGING : Context.MODE_PRIVATE, null), concurrent);
     }
 
     public DBManager(SQLiteDatabase db) {
+        this(db, false);
+    }
+
+    /**
+     * @param db
+     * @param concurrent 是否开启并发模式（WAL），内存数据库不支持
+     */
+    public DBManager(SQLiteDatabase db, boolean concurrent) {
         mDatabase = db;
+        mConcurrent = concurrent && db != null && db.enableWriteAheadLogging();
+        mStatements = new StatementCache(db, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * @return 是否已经开启并发模式
+     */
+    public boolean isConcurrent() {
+        return mConcurrent;
+    }
+
+    /**
+     * 设置操作监听，用于统计每张表的写入、查询、升级以及事务的耗时。为 null 时取消监听
+     */
+    public void setListener(DBListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 报告一次成功的操作，SQLite 的耗时为总耗时减去对象转换的耗时
+     * @param start 操作开始时的 System.nanoTime()
+     */
+    private static void report(DBListener listener, DBListener.Operation operation, String table,
+                               int rows, long start, long mappingNanos) {
+        long total = System.nanoTime() - start;
+        try {
+            listener.onOperation(operation, table, rows, total - mappingNanos, mappingNanos);
+        } catch (RuntimeException e) {
+            Logger.e(e);
+        }
+    }
+
+    /**
+     * 设置慢查询监听。queryByWhere、getQueryCursor、rawQuery、deleteByWhere 执行超过 thresholdMillis 时，
+     * 获取语句的 EXPLAIN QUERY PLAN，标记出全表扫描的大表后报告给 listener。
+     * 查询返回的 Cursor 依然在第一次使用时才执行，计时的是第一次填充数据的耗时
+     * @param listener 为 null 时取消检查
+     * @param thresholdMillis 超过该时间的语句视为慢查询
+     * @param intervalMillis 同样形式的语句（常量替换为 ? 之后相同）在该时间内只报告一次
+     */
+    public void setSlowQueryListener(SlowQueryListener listener, long thresholdMillis, long intervalMillis) {
+        setSlowQueryListener(listener, thresholdMillis, intervalMillis, SlowQueryDetector.DEFAULT_MIN_SCAN_ROWS);
+    }
+
+    /**
+     * @param minScanRows 全表扫描的表估算的行数达到该值时才标记，小表全表扫描比使用索引更快
+     * @see #setSlowQueryListener(SlowQueryListener, long, long)
+     */
+    public void setSlowQueryListener(SlowQueryListener listener, long thresholdMillis, long intervalMillis, long minScanRows) {
+        mSlowQuery = listener == null ? null :
+                new SlowQueryDetector(listener, thresholdMillis, intervalMillis, minScanRows);
+    }
+
+    /**
+     * 执行查询，设置了慢查询监听时在 Cursor 第一次填充数据后检查耗时
+     */
+    private Cursor queryCursor(final String sql, final String[] args) {
+        final SlowQueryDetector detector = mSlowQuery;
+        if(detector == null) return mDatabase.rawQuery(sql, args);
+
+        return mDatabase.rawQueryWithFactory(new SQLiteDatabase.CursorFactory() {
+            @Override
+            public Cursor newCursor(final SQLiteDatabase db, SQLiteCursorDriver driver, String editTable, SQLiteQuery query) {
+                return new SQLiteCursor(driver, editTable, query) {
+                    private boolean checked;
+
+                    /**
+                     * SQLiteCursor 在第一次移动或者获取行数时执行查询并填充第一个窗口，
+                     * 其他方法都经过这里，只在第一次调用时计时
+                     */
+                    @Override
+                    public int getCount() {
+                        if(checked) return super.getCount();
+                        checked = true;
+                        long start = System.nanoTime();
+                        int count = super.getCount();
+                        detector.check(db, sql, args, start);
+                        return count;
+                    }
+                };
+            }
+        }, sql, args, null);
+    }
+
+    SQLiteDatabase getDatabase() {
+        return mDatabase;
+    }
+
+    void register(WriteBehindBuffer buffer) {
+        mBuffers.add(buffer);
+    }
+
+    void unregister(WriteBehindBuffer buffer) {
+        mBuffers.remove(buffer);
+    }
+
+    /**
+     * 修改预编译语句缓存的大小，已缓存的语句会被关闭
+     * @param maxSize 最多缓存的语句数
+     */
+    public void setStatementCacheSize(int maxSize) {
+        StatementCache old = mStatements;
+        mStatements = new StatementCache(mDatabase, maxSize);
+        old.close();
+    }
+
+    /**
+     * @return 预编译语句缓存命中的次数
+     */
+    public int getStatementCacheHitCount() {
+        return mStatements.hitCount();
+    }
+
+    /**
+     * @return 预编译语句缓存未命中、需要重新编译的次数
+     */
+    public int getStatementCacheMissCount() {
+        return mStatements.missCount();
+    }
+
+    /**
+     * 使用缓存的预编译语句执行查询，返回第一行第一列的值
+     * @param args 按原生类型绑定的参数
+     */
+    private long simpleQueryForLong(String sql, Object... args) {
+        StatementCache cache = mStatements;
+        SQLiteStatement statement = cache.acquire(sql);
+        try {
+            bindArgs(statement, args);
+            return statement.simpleQueryForLong();
+        } finally {
+            cache.release(statement);
+        }
     }
 
     /**
-     * 释放数据库操作
+     * 使用缓存的预编译语句执行 UPDATE、DELETE
+     * @param args 按原生类型绑定的参数
+     * @return 修改的行数
+     */
+    private int executeUpdateDelete(String sql, Object... args) {
+        if(showLog) Logger.d(sql);
+        StatementCache cache = mStatements;
+        SQLiteStatement statement = cache.acquire(sql);
+        try {
+            bindArgs(statement, args);
+            return statement.executeUpdateDelete();
+        } finally {
+            cache.release(statement);
+        }
+    }
+
+    private static void bindArgs(SQLiteProgram program, Object[] args) {
+        program.clearBindings();
+        if(args == null) return;
+        for(int i = 0; i < args.length; i++) {
+            ColumnInfo.bindValue(program, i + 1, args[i]);
+        }
+    }
+
+    /**
+     * 执行查询，参数按原生类型绑定，数值参数可以直接与数值字段比较、使用索引
+     */
+    private Cursor rawQueryWithArgs(String sql, final Object[] args) {
+        if(showLog) Logger.d(sql);
+        return mDatabase.rawQueryWithFactory(new SQLiteDatabase.CursorFactory() {
+            @Override
+            public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver driver, String editTable, SQLiteQuery query) {
+                bindArgs(query, args);
+                return new SQLiteCursor(driver, editTable, query);
+            }
+        }, sql, null, null);
+    }
+
+    /**
+     * 开启该表的对象缓存，queryById 查询过的对象按主键缓存，再次查询时直接返回同一个对象。
+     * 通过 DBManager 修改、删除数据时会使对应的缓存失效；
+     * 返回的对象被多处共享，修改后需要调用 update 等方法写入数据库
+     * @param clazz
+     * @param maxSize 最多缓存的对象数，超过后淘汰最久没有使用的对象
+     * @throws DatabaseException 该表没有主键
+     */
+    public void enableObjectCache(Class<?> clazz, int maxSize) {
+        TableInfo.of(clazz).getPrimary(true);
+        mCaches.put(clazz, new ObjectCache(maxSize));
+    }
+
+    public void disableObjectCache(Class<?> clazz) {
+        ObjectCache cache = mCaches.remove(clazz);
+        if(cache != null) cache.clear();
+    }
+
+    /**
+     * 使缓存中的对象失效，必须在写入数据库之后调用。失效会增加缓存的版本号，
+     * 写入之前开始的查询结果不会再放入缓存；不在事务中的单条语句写入后已经提交，直接失效即可。
+     * 在事务中时，事务结束后会再清空一次该表的缓存，
+     * 避免缓存事务中未提交或者其他线程在提交前查询到的数据
+     * @param id 主键，为 null 时清空该表的缓存
+     */
+    private void invalidate(Class<?> clazz, Object id) {
+        if(mCaches.isEmpty()) return;
+        ObjectCache cache = mCaches.get(clazz);
+        if(cache == null) return;
+
+        if(id == null) {
+            cache.clear();
+        } else {
+            cache.remove(cacheKey(TableInfo.of(clazz).primary, id));
+        }
+        TransactionState state = mTransaction.get();
+        if(state != null) {
+            state.dirtyCaches.add(cache);
+        }
+    }
+
+    /**
+     * @return 对象缓存的键，按主键字段的原生类型统一，如整数主键的 7、7L、"007" 都为 "7"
+     */
+    private static String cacheKey(ColumnInfo primary, Object id) {
+        return toPrimaryKey(primary, id).toString();
+    }
+
+    private void invalidate(TableInfo info, Object[] list) {
+        if(mCaches.isEmpty() || !mCaches.containsKey(info.clazz)) return;
+        for(Object t : list) {
+            if(t != null) invalidate(info.clazz, info.primary.getString(t));
+        }
+    }
+
+    /**
+     * 清空所有表的缓存，用于无法确定修改了哪张表的情况
+     */
+    private void invalidateAll() {
+        for(Class<?> clazz : mCaches.keySet()) {
+            invalidate(clazz, null);
+        }
+    }
+
+    /**
+     * 释放数据库操作，关闭前先写入所有 WriteBehindBuffer 中缓存的数据
      */
     public void close() {
+        for(WriteBehindBuffer buffer : mBuffers) {
+            try {
+                buffer.close();
+            } catch (Exception e) {
+                Logger.e(e);
+            }
+        }
+        mStatements.close();
         if(mDatabase != null) {
             mDatabase.close();
         }
         mDatabase = null;
+        mCaches.clear();
     }
 
     /**
-     * 根据类名创建数据库
+     * 根据类名创建数据库。
+     * 建表语句、索引的版本号保存在同一个数据库的 jacky_db_meta 表中，全部一致时不会开启事务
      * @param classes
      */
     public void createTables(Context context, Class<?>... classes) {
@@ -64,110 +378,446 @@ public final class DBManager {
             return;
         }
 
-//        SharedPreferences preferences =
-//                context.getSharedPreferences("jacky_db", Context.MODE_PRIVATE);
+        boolean hasMeta = true;
+        Map<String, String> versions = queryMetaVersions();
+        if(versions == null) {
+            hasMeta = false;
+            versions = loadLegacyVersions();
+        }
+
+        //先比对版本号，找出需要新建或者修改的表
+        List<TableInfo> changed = new ArrayList<TableInfo>();
+        for(Class<?> clazz : classes) {
+            TableInfo info = TableInfo.of(clazz);
+            Table table = info.getTable();
+            if(info.columns.length <= 0) continue;
 
+            String tableName = table.value();
+            String sqlVersion = String.valueOf(generateCreateTableSql(table, info.columns).hashCode());
+            if(!sqlVersion.equals(versions.get(tableName))
+                    || !info.getIndexVersion().equals(versions.get(tableName + INDEX_SUFFIX))
+                    || !NATIVE_VERSION.equals(versions.get(tableName + NATIVE_SUFFIX))) {
+                changed.add(info);
+            }
+        }
+        if(hasMeta && changed.isEmpty()) {
+            return;
+        }
 
+        beginTransaction();
+        try {
+            if(!hasMeta) {
+                mDatabase.execSQL("CREATE TABLE IF NOT EXISTS " + META_TABLE + "(name TEXT PRIMARY KEY, version TEXT)");
+                //导入旧版本保存在 jacky_db 文件中的版本号
+                for(Map.Entry<String, String> entry : versions.entrySet()) {
+                    saveMetaVersion(entry.getKey(), entry.getValue());
+                }
+            }
+            DBListener listener = mListener;
+            for(TableInfo info : changed) {
+                long start = listener == null ? 0 : System.nanoTime();
+                createTable(info, versions);
+                if(listener != null) report(listener, DBListener.Operation.MIGRATION, info.getName(), -1, start, 0);
+            }
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
+        }
+    }
+
+    /**
+     * 新建表，或者按照注解修改已存在的表，并保存新的版本号
+     * @param versions 已保存的版本号
+     */
+    private void createTable(TableInfo info, Map<String, String> versions) {
+        Table table = info.getTable();
+        String tableName = table.value();
+        String createSql = generateCreateTableSql(table, info.columns);
+        String sqlVersion = String.valueOf(createSql.hashCode());
+        String indexKey = tableName + INDEX_SUFFIX;
+        String oldIndex = versions.get(indexKey);
+        String indexVersion = info.getIndexVersion();
+
+        Map<String, TableColumn> map = queryTableColumnsInfo(mDatabase, tableName);
+        boolean indexed = false;
+        if(map == null) {
+            mDatabase.execSQL(createSql);
+        } else {
+            if(!sqlVersion.equals(versions.get(tableName))) {
+                indexed = migrateTable(info, createSql, map, oldIndex);
+            }
+            if(!NATIVE_VERSION.equals(versions.get(tableName + NATIVE_SUFFIX))) {
+                convertLegacyValues(info.clazz);
+            }
+        }
+        //新建、重建表后需要同步索引，重建表时原有的索引已随临时表一起删除
+        if(!indexed) {
+            updateIndexes(info, oldIndex);
+        }
+        saveMetaVersion(tableName, sqlVersion);
+        saveMetaVersion(indexKey, indexVersion);
+        saveMetaVersion(tableName + NATIVE_SUFFIX, NATIVE_VERSION);
+    }
+
+    /**
+     * 一次查询出全部已保存的版本号
+     * @return 表名称（索引为 表名称_INDEX） -> 版本号，jacky_db_meta 表不存在时返回 null
+     */
+    private Map<String, String> queryMetaVersions() {
+        Cursor cursor;
+        try {
+            cursor = mDatabase.rawQuery("SELECT name,version FROM " + META_TABLE, null);
+        } catch (SQLException e) {
+            return null;
+        }
+        try {
+            Map<String, String> map = new HashMap<String, String>();
+            while(cursor.moveToNext()) {
+                map.put(cursor.getString(0), cursor.getString(1));
+            }
+            return map;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void saveMetaVersion(String name, String version) {
+        mDatabase.execSQL("INSERT OR REPLACE INTO " + META_TABLE + "(name,version) VALUES (?,?)",
+                new Object[]{name, version});
+    }
+
+    /**
+     * 读取旧版本保存在数据库同目录下 jacky_db 文件中的版本号，只在 jacky_db_meta 表创建前读取一次
+     * @return 表名称（索引为 表名称_INDEX） -> 版本号
+     */
+    private Map<String, String> loadLegacyVersions() {
+        Map<String, String> map = new HashMap<String, String>();
         File file = new File(mDatabase.getPath());
-        String dbName = file.getName();
+        File preferences = new File(file.getParent(), "jacky_db");
+        if(!preferences.exists() || !preferences.canRead()) {
+            return map;
+        }
 
         Properties properties = new Properties();
-        File preferences = new File(file.getParent(), "jacky_db");
-        if(preferences.exists() && preferences.canRead()) {
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(preferences);
+            properties.load(in);
+        } catch (IOException e) {
+            Logger.e(e);
+        } finally {
+            if(in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    Logger.e(e);
+                }
+            }
+        }
+
+        String prefix = "SQL_" + file.getName() + '_';
+        for(String key : properties.stringPropertyNames()) {
+            if(key.startsWith(prefix)) {
+                map.put(key.substring(prefix.length()), properties.getProperty(key));
+            }
+        }
+        return map;
+    }
+
+    /**
+     * 将旧版本以字符串写入的数据转换为原生类型：boolean 字段的 'true'/'false' 转换为 1/0，
+     * 数值字段中的空字符串转换为该字段的默认值（基本类型为 0，其他为 NULL）。createTables 会对已存在的表自动执行一次
+     * @param clazz
+     * @return 修改的记录数
+     */
+    public int convertLegacyValues(Class<?> clazz) {
+        if(mDatabase == null) return 0;
+        TableInfo info = TableInfo.of(clazz);
+        String table = info.getName();
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        int count = 0;
+
+        beginTransaction();
+        try {
+            for(ColumnInfo column : info.columns) {
+                DBType type = column.getDBType();
+                if(type == DBType.TEXT || type == DBType.CHAR || type == DBType.BLOB || column.isPrimary) continue;
+
+                String name = column.name;
+                if(type == DBType.BOOLEAN) {
+                    count += executeUpdateDelete("UPDATE " + table + " SET " + name + "=1 WHERE " + name + "='true'");
+                    count += executeUpdateDelete("UPDATE " + table + " SET " + name + "=0 WHERE " + name + "='false'");
+                }
+                String value = getDefaultValue(column);
+                if(value.startsWith("'")) value = "NULL";
+                count += executeUpdateDelete("UPDATE " + table + " SET " + name + "=" + value + " WHERE " + name + "=''");
+            }
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
+        }
+        invalidate(clazz, null);
+        if(listener != null) report(listener, DBListener.Operation.UPDATE, table, count, start, 0);
+        return count;
+    }
+
+    /**
+     * 按注解修改已存在的表结构。只是新增、重命名、删除字段时使用 ALTER TABLE 直接修改；
+     * 字段类型、主键发生变化，或者当前 SQLite 版本不支持时，才通过临时表重建整张表
+     * @param info
+     * @param createSql 建表语句
+     * @param existing 数据库中现有的字段
+     * @param oldIndexVersion 上一次保存的索引版本号
+     * @return 是否已经同步了索引，通过 ALTER TABLE 修改时需要在删除字段之前同步
+     */
+    private boolean migrateTable(TableInfo info, String createSql, Map<String, TableColumn> existing, String oldIndexVersion) {
+        Table table = info.getTable();
+        String tableName = table.value();
+        boolean rebuild = table.autoId() != isAutoIncrement(tableName);
+
+        List<ColumnInfo> adds = new ArrayList<ColumnInfo>();
+        Map<String, String> renames = new HashMap<String, String>(); //新字段名 -> 原字段名
+        Set<String> matched = new HashSet<String>();
+        for (ColumnInfo column : info.columns) {
+            TableColumn old = existing.get(column.name);
+            String oldName = column.column.oldName();
+            if(old == null && oldName.length() > 0 && !info.hasColumn(oldName)) {
+                old = existing.get(oldName);
+                if(old != null) {
+                    renames.put(column.name, oldName);
+                }
+            }
+            if(old == null) {
+                if(column.isPrimary) {
+                    rebuild = true;
+                } else {
+                    adds.add(column);
+                }
+                continue;
+            }
+            matched.add(old.name);
+            if(column.isPrimary != old.primary || !getColumnType(column).equalsIgnoreCase(old.type)) {
+                rebuild = true;
+            }
+            //ALTER TABLE 不能修改默认值，只能重建。旧版本建表的默认值不重建，见 isCompatibleDefault
+            if(!column.isPrimary && !isCompatibleDefault(column, old.defValue)) {
+                rebuild = true;
+            }
+        }//end for
+
+        List<String> drops = new ArrayList<String>();
+        for (TableColumn old : existing.values()) {
+            if(matched.contains(old.name)) continue;
+            if(old.primary) {
+                rebuild = true;
+            } else {
+                drops.add(old.name);
+            }
+        }
+        if(!renames.isEmpty() && getSQLiteVersion() < RENAME_COLUMN_VERSION) {
+            rebuild = true;
+        }
+
+        if(!rebuild) {
             try {
-                properties.load(new FileInputStream(preferences));
-            } catch (IOException e) {
+                for (Map.Entry<String, String> entry : renames.entrySet()) {
+                    mDatabase.execSQL("ALTER TABLE " + tableName + " RENAME COLUMN " + entry.getValue() + " TO " + entry.getKey());
+                }
+                for (ColumnInfo column : adds) {
+                    mDatabase.execSQL("ALTER TABLE " + tableName + " ADD COLUMN " + getColumnDefinition(table, column));
+                }
+                //先删除已经不再使用的索引，被索引的字段不能删除
+                updateIndexes(info, oldIndexVersion);
+                if(getSQLiteVersion() >= DROP_COLUMN_VERSION) {
+                    for (String name : drops) {
+                        mDatabase.execSQL("ALTER TABLE " + tableName + " DROP COLUMN " + name);
+                    }
+                } else if(!drops.isEmpty()) {
+                    //不支持 DROP COLUMN 时保留原有字段，不影响数据的读写
+                    Logger.w("Table " + tableName + " keep unused columns", drops);
+                }
+                return true;
+            } catch (SQLException e) {
+                Logger.w("Alter table " + tableName + " failed, rebuild it.");
                 Logger.e(e);
             }
         }
+        rebuildTable(info, createSql, renames);
+        return false;
+    }
+
+    /**
+     * 通过创建临时表的方式来实现对表的字段的修改，相同名称（或原名称）且类型不变的字段会保留原有数据。
+     * 没有这样的字段时原表改名为 表名_backup_时间 保留，不会删除数据。每张表只保留最近的一个备份，
+     * 可以通过 dropBackupTables 删除
+     * @param renames 新字段名 -> 原字段名
+     */
+    private void rebuildTable(TableInfo info, String createSql, Map<String, String> renames) {
+        long start = System.currentTimeMillis();
+        String tableName = info.getName();
+        Map<String, TableColumn> existing = queryTableColumnsInfo(mDatabase, tableName);
+
+        //比对原始表与新表之间共同的字段
+        StringBuilder target = new StringBuilder();
+        StringBuilder source = new StringBuilder();
+        for (ColumnInfo column : info.columns) {
+            String from = column.name;
+            TableColumn old = existing.get(from);
+            if(old == null && renames.containsKey(column.name)) {
+                from = renames.get(column.name);
+                old = existing.get(from);
+            }
+
+            if(old != null && getColumnType(column).equalsIgnoreCase(old.type)) {
+                target.append(',').append(column.name);
+                source.append(',').append(from);
+            }
+        }//end for
+
+        if(target.length() == 0) {
+            //没有可以保留的字段时不删除原有数据，原表改名备份，之前的备份删除，避免数据库不断增长
+            String backup = tableName + "_backup_" + System.currentTimeMillis();
+            for(String old : queryBackupTables(tableName)) {
+                mDatabase.execSQL("DROP TABLE IF EXISTS " + old);
+                Logger.w("Drop old backup table " + old);
+            }
+            dropIndexes(tableName);
+            mDatabase.execSQL("ALTER TABLE " + tableName + " RENAME TO " + backup);
+            mDatabase.execSQL(createSql);
+            Logger.w("Table " + tableName + " has no compatible columns, old data is kept in " + backup);
+        } else {
+            mDatabase.execSQL("ALTER TABLE " + tableName + " RENAME TO TEMPN");
+            mDatabase.execSQL(createSql);
+            mDatabase.execSQL("REPLACE INTO "+ tableName + "(" + target.substring(1) + ") SELECT "
+                    + source.substring(1) + " FROM TEMPN");
+            mDatabase.execSQL("DROP TABLE TEMPN");
+        }
+        Logger.i("Rebuild table " + tableName + " cost " + (System.currentTimeMillis() - start) + "ms");
+    }
 
-        beginTransaction();
+    /**
+     * @return rebuildTable 为该表创建的备份表名称
+     */
+    private List<String> queryBackupTables(String tableName) {
+        List<String> names = new ArrayList<String>();
+        Cursor cursor = mDatabase.rawQuery("SELECT name FROM sqlite_master WHERE type='table' AND name GLOB ?",
+                new String[]{tableName + "_backup_[0-9]*"});
+        try {
+            while(cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+
+    /**
+     * 删除表结构不兼容、升级时保留下来的原表数据（表名_backup_时间）
+     * @param classes
+     * @return 删除的备份表名称
+     */
+    public List<String> dropBackupTables(Class<?>... classes) {
+        List<String> dropped = new ArrayList<String>();
+        if(mDatabase == null || classes == null) return dropped;
         for(Class<?> clazz : classes) {
-            Table table = getTable(clazz);
+            for(String name : queryBackupTables(TableInfo.of(clazz).getName())) {
+                mDatabase.execSQL("DROP TABLE IF EXISTS " + name);
+                dropped.add(name);
+            }
+        }
+        return dropped;
+    }
 
-            Field[] fields = clazz.getDeclaredFields();
-            if(fields.length <= 0) continue;
+    /**
+     * 删除表上手动创建的索引，表改名后索引名称依然被占用，新表无法创建同名的索引
+     */
+    private void dropIndexes(String tableName) {
+        List<String> names = new ArrayList<String>();
+        Cursor cursor = mDatabase.rawQuery("SELECT name FROM sqlite_master WHERE type='index' AND tbl_name=? AND sql IS NOT NULL",
+                new String[]{tableName});
+        try {
+            while(cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        for(String name : names) {
+            mDatabase.execSQL("DROP INDEX IF EXISTS " + name);
+        }
+    }
 
-            String tableName = table.value();
-            String createSql = generateCreateTableSql(table, fields);
-            String sqlVersion = String.valueOf(createSql.hashCode());
-            String preferencesKey = "SQL_" + dbName + '_' + tableName;
+    private boolean isAutoIncrement(String tableName) {
+        Cursor cursor = mDatabase.rawQuery("SELECT sql FROM sqlite_master WHERE type='table' AND name=?",
+                new String[]{tableName});
+        try {
+            return cursor.moveToFirst() && cursor.getString(0) != null
+                    && cursor.getString(0).toUpperCase().contains("AUTOINCREMENT");
+        } finally {
+            cursor.close();
+        }
+    }
 
-            Map<String, String> map = queryTableColumnsInfo(mDatabase, tableName);
-            if(map == null) {
-                mDatabase.execSQL(createSql);
-            } else {
-                String version = properties.getProperty(preferencesKey);
-                //判断建表语句是否发生了变更
-                if(sqlVersion != null && sqlVersion.equals(version)) continue;
-
-                //比对原始表与新表之间共同的字段
-                StringBuilder sb = new StringBuilder();
-                for (Field field : fields) {
-                    Column column = field.getAnnotation(Column.class);
-                    if(column != null) {
-                        DBType type = getDBType(column, field.getType());
-                        String value = map.get(column.value());
-
-                        if(type.name().equals(value)) {
-                            sb.append(',').append(column.value());
-                        }
-                    }
-                }//end for
+    /**
+     * 按注解同步表的索引：删除上一次通过注解创建、现在已不再声明的索引，
+     * 删除定义发生变化的索引，再创建缺少的索引。没有通过注解创建过的索引不会被删除
+     * @param info
+     * @param oldVersion 上一次保存的 TableInfo.getIndexVersion()，可以为 null
+     */
+    private void updateIndexes(TableInfo info, String oldVersion) {
+        Map<String, String> indexes = info.getIndexes();
+        Set<String> managed = new HashSet<String>();
+        if(oldVersion != null && oldVersion.indexOf(':') >= 0) {
+            for(String name : oldVersion.substring(oldVersion.indexOf(':') + 1).split(",")) {
+                if(name.length() > 0) managed.add(name);
+            }
+        }
 
-                if(sb.length() == 0) {
-                    mDatabase.execSQL(createSql);
-                } else {
-                    String t = sb.deleteCharAt(0).toString();
-                    //通过创建临时表的方式来实现对表的字段的修改
-                    mDatabase.execSQL("ALTER TABLE " + tableName + " RENAME TO TEMPN");
-                    mDatabase.execSQL(createSql);
-                    mDatabase.execSQL("REPLACE INTO "+ tableName + "(" + t + ") SELECT " + t + " FROM TEMPN");
-                    mDatabase.execSQL("DROP TABLE TEMPN");
+        //自动创建的索引（如主键）sql 为 NULL，不需要处理
+        Cursor cursor = mDatabase.rawQuery("SELECT name,sql FROM sqlite_master WHERE type='index' AND tbl_name=? AND sql IS NOT NULL",
+                new String[]{info.getName()});
+        try {
+            while(cursor.moveToNext()) {
+                String name = cursor.getString(0);
+                String sql = indexes.get(name);
+                if(sql == null ? managed.contains(name) : !sql.equals(cursor.getString(1))) {
+                    mDatabase.execSQL("DROP INDEX IF EXISTS " + name);
                 }
             }
-            //缓存建表语句的版本号
-            properties.setProperty(preferencesKey, String.valueOf(sqlVersion));
+        } finally {
+            cursor.close();
         }
-        setTransactionSuccessful();
-        endTransaction();
 
-        try {
-            if(!preferences.exists()) {
-                preferences.getParentFile().mkdirs();
-                preferences.createNewFile();
-            }
-            properties.store(new FileOutputStream(preferences), "");
-        } catch (IOException e) {
-            Logger.e(e);
+        for(String sql : indexes.values()) {
+            mDatabase.execSQL(sql.replaceFirst(" INDEX ", " INDEX IF NOT EXISTS "));
         }
     }
 
     public boolean isTableExit(Class clazz) {
         if(mDatabase == null || clazz == null) return false;
         String name = getTableName(clazz);
-        Cursor cursor = mDatabase.rawQuery("SELECT 1 FROM sqlite_master WHERE NAME='"+ name +"'", null);
-        if(cursor == null) return false;
-        int i = 0;
-        if(0 != cursor.getCount()) {
-            cursor.moveToFirst();
-            i = cursor.getInt(0);
-        }
-        cursor.close();
-        return i > 0;
+        return simpleQueryForLong("SELECT COUNT(1) FROM sqlite_master WHERE NAME=?", name) > 0;
     }
 
-    private final Map<String, String> queryTableColumnsInfo(SQLiteDatabase db, String table) {
+    /**
+     * @return 字段名称 -> 字段信息，表不存在时返回 null
+     */
+    private final Map<String, TableColumn> queryTableColumnsInfo(SQLiteDatabase db, String table) {
         Cursor cursor = null;
         try{
             cursor = db.rawQuery("PRAGMA TABLE_INFO(" + table + ")", null);
             if(cursor.getCount() > 0) {
-                Map<String, String> map = new HashMap<String, String>();
+                Map<String, TableColumn> map = new HashMap<String, TableColumn>();
+                int name = cursor.getColumnIndex("name");
+                int type = cursor.getColumnIndex("type");
+                int pk = cursor.getColumnIndex("pk");
+                int defValue = cursor.getColumnIndex("dflt_value");
                 while(cursor.moveToNext()) {
-                    int index = cursor.getColumnIndex("name");
-                    String key = cursor.getString(index);
-                    index = cursor.getColumnIndex("type");
-                    map.put(key, cursor.getString(index));
+                    TableColumn column = new TableColumn(cursor.getString(name), cursor.getString(type),
+                            cursor.getInt(pk) > 0, cursor.getString(defValue));
+                    map.put(column.name, column);
                 }
                 return map;
             }
@@ -178,32 +828,19 @@ public final class DBManager {
             }
         }
     }
-    private final String generateCreateTableSql(Table table, Field[] fields) {
+    private final String generateCreateTableSql(Table table, ColumnInfo[] columns) {
         StringBuilder sb = new StringBuilder();
         sb.append("CREATE TABLE IF NOT EXISTS '").append(table.value()).append("'(");
 
         boolean hasId = false;
-        for (Field field : fields) {
-            Column column = field.getAnnotation(Column.class);
-            if(column != null) {
-                DBType type = getDBType(column, field.getType());
-                if(column.isPrimary()) {
-                    if(hasId == true) {
-                        throw new DatabaseException("Primary key had in the table,set isPrimary is false.");
-                    } else {
-                        hasId = true;
-                        sb.append(column.value()).append(' ').append(type.value());
-                        if(table.autoId()) {
-                            sb.append(" PRIMARY KEY AUTOINCREMENT,");
-                        } else {
-                            sb.append(" PRIMARY KEY,");
-                        }
-                    }
-                } else {
-                    sb.append(column.value()).append(' ').append(type)
-                            .append(" DEFAULT '").append(column.defValue()).append("',");
+        for (ColumnInfo column : columns) {
+            if(column.isPrimary) {
+                if(hasId == true) {
+                    throw new DatabaseException("Primary key had in the table,set isPrimary is false.");
                 }
+                hasId = true;
             }
+            sb.append(getColumnDefinition(table, column)).append(',');
         }//end for fields
 
         if(hasId == false && table.autoId()) {
@@ -223,55 +860,179 @@ public final class DBManager {
         insert(list.toArray());
     }
     /**
-     * 将数据插入数据库。如果表的主键设为自动增加，则数据的主键值会更改
+     * @return 建表语句中该字段的定义
+     */
+    private static String getColumnDefinition(Table table, ColumnInfo column) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(column.name).append(' ').append(getColumnType(column));
+        if(column.isPrimary) {
+            sb.append(table.autoId() ? " PRIMARY KEY AUTOINCREMENT" : " PRIMARY KEY");
+        } else {
+            sb.append(" DEFAULT ").append(getDefaultValue(column));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 字段默认值的表达式，与 PRAGMA TABLE_INFO 中的 dflt_value 一致。
+     * TEXT 字段为字符串；数值字段按原生类型，没有指定 defValue 时基本类型为 0，其他为 NULL
+     */
+    static String getDefaultValue(ColumnInfo column) {
+        String value = column.column.defValue();
+        DBType type = column.getDBType();
+        if(type == DBType.TEXT || type == DBType.CHAR) {
+            return quote(value);
+        }
+        if(value.length() == 0) {
+            return type == DBType.BLOB || !column.fieldType.isPrimitive() ? "NULL" : "0";
+        }
+        if(type == DBType.BOOLEAN && ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value))) {
+            return "true".equalsIgnoreCase(value) ? "1" : "0";
+        }
+        return value.matches("-?\\d+(\\.\\d+)?") ? value : quote(value);
+    }
+
+    /**
+     * 已有字段的默认值是否可以保留。旧版本数值字段的默认值也是字符串，如 '' 或 '18'，
+     * 为此重建会在升级后第一次启动时复制所有的表。写入时每个字段都会赋值，
+     * 已保存的 '' 由 convertLegacyValues 转换，因此保留旧的默认值，之后因为其他原因重建表时再使用新的默认值
+     * @param old PRAGMA TABLE_INFO 中的 dflt_value
+     */
+    static boolean isCompatibleDefault(ColumnInfo column, String old) {
+        String value = getDefaultValue(column);
+        if(value.equals(old)) return true;
+        DBType type = column.getDBType();
+        if(type == DBType.TEXT || type == DBType.CHAR) return false;
+        return "''".equals(old) || quote(value).equals(old);
+    }
+
+    /**
+     * @return SQL 字符串常量，值中的单引号转义为两个
+     */
+    private static String quote(String value) {
+        return '\'' + value.replace("'", "''") + '\'';
+    }
+
+    /**
+     * @return 建表语句中该字段的类型，与 PRAGMA TABLE_INFO 中的 type 一致
+     */
+    private static String getColumnType(ColumnInfo column) {
+        DBType type = column.getDBType();
+        //主键使用 SQL 类型名称，其他字段沿用枚举名称，保持已有表的建表语句不变
+        return column.isPrimary ? type.value() : type.name();
+    }
+
+    /**
+     * 将数据插入数据库。如果表的主键设为自动增加，则数据的主键值会更改。
+     * 多行数据会合并成 INSERT ... VALUES (..),(..) 语句分批写入，按字段的原生类型绑定参数
      * @param list
      */
+    @SuppressWarnings("unchecked")
     public <T> void insert(T... list) {
         if(mDatabase == null || list == null || list.length <= 0 || list[0] == null) return;
 
         Class<?> clazz = list[0].getClass();
-        Table table = getTable(clazz);
-        Field[] fields = clazz.getDeclaredFields();
+        TableInfo info = TableInfo.of(clazz);
+        ColumnInfo idColumn = info.getTable().autoId() ? info.primary : null;//自动生成主键，则不添加主键信息
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        List<T> rows = checkRows(list, clazz);
 
+        long mapping;
         beginTransaction();
-        ContentValues values = null;
         try {
-            for (T t : list) {
-                if (t == null) continue;
-                checkClass(t, clazz);
-                Field idField = null;
-                values = new ContentValues();
-                for (Field field : fields) {
-                    Column column = field.getAnnotation(Column.class);
-                    if (column == null) continue;
-                    if (table.autoId() && column.isPrimary()) {
-                        idField = field;
-                        continue;//自动生成主键，则不添加主键信息
-                    }
+            mapping = writeRows(info, info.getInsertColumns(), rows, "", idColumn, listener != null);
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
+        }
+        if(listener != null) report(listener, DBListener.Operation.INSERT, info.getName(), rows.size(), start, mapping);
+    }
 
-                    String tmp = getFieldValue(clazz, column, field, t);
-                    if (tmp != null) {
-                        values.put(column.value(), tmp);
+    /**
+     * 将数据按批写入，每批的行数由字段个数和 SQLite 参数个数的上限决定，
+     * 同样行数的语句只编译一次
+     * @param columns 需要写入的字段
+     * @param rows
+     * @param clause 追加在插入语句后面的子句
+     * @param idColumn 自动增加的主键，写入后回写到对象中，可以为 null
+     * @param timed 是否统计绑定参数的耗时
+     * @return 绑定参数的耗时，timed 为 false 时为 0
+     */
+    private <T> long writeRows(TableInfo info, ColumnInfo[] columns, List<T> rows, String clause,
+                               ColumnInfo idColumn, boolean timed) {
+        int size = rows.size();
+        int batch = Math.min(getBatchRows(columns.length), size);
+        StatementCache cache = mStatements;
+        long mapping = 0;
+        int from = 0;
+        try {
+            for (; from < size; from += batch) {
+                int count = Math.min(batch, size - from);
+                SQLiteStatement statement = cache.acquire(info.getInsertSql(columns, count) + clause);
+                long id;
+                try {
+                    long bindStart = timed ? System.nanoTime() : 0;
+                    int index = 1;
+                    for (int r = from; r < from + count; r++) {
+                        T t = rows.get(r);
+                        for (ColumnInfo column : columns) {
+                            column.bind(statement, index++, t);
+                        }
                     }
+                    if (timed) mapping += System.nanoTime() - bindStart;
+                    id = statement.executeInsert();
+                } finally {
+                    cache.release(statement);
                 }
 
-                long id = mDatabase.insertOrThrow(table.value(), null, values);
-                if (idField != null && id != -1) {
-                    setObjectValue(idField, t, id);//更新 主键ID
+                if (idColumn != null && id != -1) {
+                    //同一条语句插入的自增主键是连续的，最后一行的主键即为返回值
+                    for (int r = from; r < from + count; r++) {
+                        idColumn.setValue(rows.get(r), id - (from + count - 1 - r));//更新 主键ID
+                    }
                 }
             }
         } catch (SQLException e) {
-            throw new SQLException(values.toString(), e);
-        } finally {
-            setTransactionSuccessful();
-            endTransaction();
+            throw new SQLException(String.valueOf(rows.get(Math.min(from, size - 1))), e);
+        }
+        return mapping;
+    }
+
+    /**
+     * @param columnCount 每行需要绑定的参数个数
+     * @return 一条插入语句可以写入的最多行数
+     */
+    private int getBatchRows(int columnCount) {
+        if (columnCount == 0 || getSQLiteVersion() < MULTI_VALUES_VERSION) return 1;
+        return Math.max(1, Math.min(MAX_BATCH_ROWS, getMaxVariableNumber() / columnCount));
+    }
+
+    /**
+     * @return 一条语句中可以绑定的参数个数上限 SQLITE_MAX_VARIABLE_NUMBER
+     */
+    int getMaxVariableNumber() {
+        return getSQLiteVersion() >= MAX_VARIABLE_VERSION ? 32766 : 999;
+    }
+
+    /**
+     * 过滤掉 null 并检查数据类型
+     */
+    private static <T> List<T> checkRows(T[] list, Class<?> clazz) {
+        List<T> rows = new ArrayList<T>(list.length);
+        for (T t : list) {
+            if (t == null) continue;
+            checkClass(t, clazz);
+            rows.add(t);
         }
+        return rows;
     }
 
     public <T> void replaceInto(List<T> list) {
         replaceInto(list, null);
     }
 
+    @SuppressWarnings("unchecked")
     public <T> void replaceInto(T... list) {
         replaceInto(list, null);
     }
@@ -287,7 +1048,8 @@ public final class DBManager {
     }
 
     /**
-     * 如果主键ID已存在则更新数据，不存在主键ID则重新插入一条数据（插入的ID会变）
+     * 如果主键ID已存在则更新数据，不存在主键ID则重新插入一条数据（插入的ID会变）。
+     * SQLite 3.24.0 以上且主键不是自动增加时，使用 INSERT ... ON CONFLICT DO UPDATE 一条语句完成
      * @param list
      * @param ignoreColumn 不需要更新数据的字段，保留原有数据库中的数据
      * @param <T>
@@ -296,10 +1058,19 @@ public final class DBManager {
         if(mDatabase == null || list == null || list.length <= 0 || list[0] == null) return;
 
         Class<?> clazz = list[0].getClass();
-        Table table = getTable(clazz);
-        Field[] fields = clazz.getDeclaredFields();
-        String whereClause = getPrimaryColumn(clazz, true).value() + "=?";
+        TableInfo info = TableInfo.of(clazz);
+        Table table = info.getTable();
+        String whereClause = info.getPrimary(true).name + "=?";
 
+        if(!table.autoId() && getSQLiteVersion() >= UPSERT_VERSION) {
+            upsert(info, list, ignoreColumn);
+            return;
+        }
+
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        long mapping = 0;
+        int rows = 0;
         String id = null;
         beginTransaction();
         ContentValues values = null;
@@ -307,43 +1078,71 @@ public final class DBManager {
             for (T t : list) {
                 if (t == null) continue;
                 checkClass(t, clazz);
-                Field idField = null;
+                long mapStart = listener == null ? 0 : System.nanoTime();
+                ColumnInfo idColumn = null;
                 values = new ContentValues();
-                for (Field field : fields) {
-                    Column column = field.getAnnotation(Column.class);
-                    if (column == null) continue;
-
-                    if (column.isPrimary()) {
-                        id = getFieldValue(clazz, column, field, t);
+                for (ColumnInfo column : info.columns) {
+                    if (column.isPrimary) {
+                        id = column.getString(t);
 
                         if (table.autoId()) {
-                            idField = field;
+                            idColumn = column;
                             continue;//自动生成主键，则不添加主键信息
                         }
                     }
                     if (isIgnoreColumn(ignoreColumn, column)) continue;
 
-                    String tmp = getFieldValue(clazz, column, field, t);
-                    if (tmp != null) {
-                        values.put(column.value(), tmp);
-                    }
+                    column.putValue(values, t);
                 }
+                if (listener != null) mapping += System.nanoTime() - mapStart;
+                rows++;
                 int i = mDatabase.update(table.value(), values, whereClause, new String[]{id});
                 if (i == 0) { //没有数据，则insert
                     long newid = mDatabase.insertOrThrow(table.value(), null, values);
-                    if (idField != null && newid != -1) {
-                        setObjectValue(idField, t, newid);//更新 主键ID
+                    if (idColumn != null && newid != -1) {
+                        idColumn.setValue(t, newid);//更新 主键ID
                     }
                 }
             }
+            //写入之后再失效，事务结束时还会清空一次，避免其他线程在写入前查询到的旧数据留在缓存中
+            invalidate(info, list);
+            setTransactionSuccessful();
         }catch (SQLException ee) {
             throw new SQLException(values.toString(), ee);
         } finally {
+            endTransaction();
+        }
+        if(listener != null) report(listener, DBListener.Operation.REPLACE, info.getName(), rows, start, mapping);
+    }
+
+    /**
+     * 使用 INSERT ... ON CONFLICT(主键) DO UPDATE 分批写入数据，ignoreColumn 中的字段既不插入也不更新
+     */
+    private <T> void upsert(TableInfo info, T[] list, String[] ignoreColumn) {
+        List<ColumnInfo> columns = new ArrayList<ColumnInfo>(info.columns.length);
+        for (ColumnInfo column : info.columns) {
+            if (column.isPrimary || !isIgnoreColumn(ignoreColumn, column)) {
+                columns.add(column);
+            }
+        }
+        ColumnInfo[] array = columns.toArray(new ColumnInfo[columns.size()]);
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        List<T> rows = checkRows(list, info.clazz);
+
+        long mapping;
+        beginTransaction();
+        try {
+            mapping = writeRows(info, array, rows, info.getUpsertClause(array), null, listener != null);
+            invalidate(info, list);
             setTransactionSuccessful();
+        } finally {
             endTransaction();
         }
+        if(listener != null) report(listener, DBListener.Operation.REPLACE, info.getName(), rows.size(), start, mapping);
     }
 
+    @SuppressWarnings("unchecked")
     public <T> void update(T... list) {
         update(list, null);
     }
@@ -356,30 +1155,39 @@ public final class DBManager {
         if(mDatabase == null || list == null || list.length == 0) return;
 
         Class<?> clazz = list[0].getClass();
-        String whereClause = getPrimaryColumn(clazz, true).value() + "=?";
-
-        String id = null,tmp = null, tableName = getTableName(clazz);;
+        TableInfo info = TableInfo.of(clazz);
+        String whereClause = info.getPrimary(true).name + "=?";
+
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        long mapping = 0;
+        int rows = 0;
+        String id = null, tableName = info.getName();
         beginTransaction();
-        for(T t : list) {
-            if(t == null) continue;
-            checkClass(t, clazz);
-            ContentValues values = new ContentValues();
-            for(Field field : clazz.getDeclaredFields()) {
-                Column column = field.getAnnotation(Column.class);
-                if(column == null) continue;
-                if(isIgnoreColumn(ignoreColumn, column)) continue;
-
-                tmp = getFieldValue(clazz, column, field, t);
-                if(column.isPrimary()) {
-                    id = tmp;
-                } else if(tmp != null) {
-                    values.put(column.value(), tmp);
+        try {
+            for(T t : list) {
+                if(t == null) continue;
+                checkClass(t, clazz);
+                long mapStart = listener == null ? 0 : System.nanoTime();
+                ContentValues values = new ContentValues();
+                for(ColumnInfo column : info.columns) {
+                    if(isIgnoreColumn(ignoreColumn, column)) continue;
+
+                    if(column.isPrimary) {
+                        id = column.getString(t);
+                    } else {
+                        column.putValue(values, t);
+                    }
                 }
+                if(listener != null) mapping += System.nanoTime() - mapStart;
+                rows += mDatabase.update(tableName, values, whereClause, new String[]{id});
+                invalidate(clazz, id);
             }
-            mDatabase.update(tableName, values, whereClause, new String[]{id});
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
         }
-        setTransactionSuccessful();
-        endTransaction();
+        if(listener != null) report(listener, DBListener.Operation.UPDATE, tableName, rows, start, mapping);
     }
     /**
      * 根据Where条件来更新数据
@@ -390,171 +1198,648 @@ public final class DBManager {
      */
     public <T> void updateByWhere(T t, String[] ignoreColumn, String whereClause, String[] whereArgs) {
         if(mDatabase == null) return;
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
         ContentValues values = getContentValues(t, ignoreColumn);
-        mDatabase.update(getTableName(t.getClass()), values, whereClause, whereArgs);
+        long mapping = listener == null ? 0 : System.nanoTime() - start;
+        String table = getTableName(t.getClass());
+        int i = mDatabase.update(table, values, whereClause, whereArgs);
+        invalidate(t.getClass(), null);
+        if(listener != null) report(listener, DBListener.Operation.UPDATE, table, i, start, mapping);
     }
 
     public <T> void updateByValues(Class<T> clazz, ContentValues values, String whereClause, String[] whereArgs) {
         if(mDatabase == null) return;
-        int i = mDatabase.update(getTableName(clazz), values, whereClause, whereArgs);
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        String table = getTableName(clazz);
+        int i = mDatabase.update(table, values, whereClause, whereArgs);
+        invalidate(clazz, null);
         Logger.d("update result:",i);
+        if(listener != null) report(listener, DBListener.Operation.UPDATE, table, i, start, 0);
     }
 
     public <T> void replaceIntoValues(Class<T> clazz, ContentValues values, String whereClause, String[] whereArgs) {
         if(mDatabase == null) return;
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
         String table = getTableName(clazz);
         int i = mDatabase.update(table, values, whereClause, whereArgs);
         if(i == 0) { //没有数据，则insert
             try {
                 mDatabase.insertOrThrow(table, null, values);
+                i = 1;
             }catch (SQLException e) {
                 throw new SQLException(values.toString(), e);
             }
         }
+        invalidate(clazz, null);
+        if(listener != null) report(listener, DBListener.Operation.REPLACE, table, i, start, 0);
+    }
+
+    /**
+     * 将类转换成 ContentValues 类型
+     * @param t
+     * @param <T>
+     * @return
+     */
+    public static <T> ContentValues getContentValues(T t, String[] ignoreColumn) {
+        ContentValues values = new ContentValues();
+        for(ColumnInfo column : TableInfo.of(t.getClass()).columns) {
+            if(isIgnoreColumn(ignoreColumn, column)) continue;
+
+            column.putValue(values, t);
+        }
+        return values;
+    }
+
+    /**
+     * 删除数据对象。表有主键时按主键批量删除，否则使用数据对象的全部字段作为删除条件
+     * @param list
+     * @return 删除的记录数
+     * @see #deleteByColumns(Object[])
+     */
+    @SuppressWarnings("unchecked")
+    public <T> int delete(T... list) {
+        if(mDatabase == null || list == null || list.length == 0) return 0;
+
+        Class<?> clazz = list[0].getClass();
+        TableInfo info = TableInfo.of(clazz);
+        ColumnInfo primary = info.getPrimary(false);
+        if(primary == null) {
+            return deleteByColumns(list);
+        }
+
+        List<String> ids = new ArrayList<String>(list.length);
+        for(T t : list) {
+            if(t == null) continue;
+            checkClass(t, clazz);
+            ids.add(primary.getString(t));
+        }
+        return deleteByIDs(clazz, ids);
+    }
+
+    /**
+     * 使用数据对象的全部字段作为删除条件，所有字段的值都相等的记录才会被删除。
+     * 无法使用主键索引，浮点数的字段可能因为精度而匹配不到
+     * @param list
+     * @return 删除的记录数
+     */
+    @SuppressWarnings("unchecked")
+    public <T> int deleteByColumns(T... list) {
+        if(mDatabase == null || list == null || list.length == 0) return 0;
+
+        Class<?> clazz = list[0].getClass();
+        TableInfo info = TableInfo.of(clazz);
+        String sql = info.getSql(TableInfo.SQL_DELETE_BY_COLUMNS);
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        long mapping = 0;
+        int count = 0;
+
+        beginTransaction();
+        try {
+            Object[] whereArgs = new Object[info.columns.length];
+            for(T t : list) {
+                if(t == null) continue;
+                checkClass(t, clazz);
+
+                long mapStart = listener == null ? 0 : System.nanoTime();
+                int i = 0;
+                for(ColumnInfo column : info.columns) {
+                    whereArgs[i++] = column.getDatabaseValue(t);
+                }
+                if(listener != null) mapping += System.nanoTime() - mapStart;
+                count += executeUpdateDelete(sql, whereArgs);
+            }
+            invalidate(info, list);
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
+        }
+        if(listener != null) report(listener, DBListener.Operation.DELETE, info.getName(), count, start, mapping);
+        return count;
+    }
+
+    /**
+     * 删除表中的全部数据
+     * @param clazz
+     */
+    public void deleteAll(Class<?> clazz) {
+    	deleteByWhere(clazz, null, null);
+    }
+    
+    /**
+     * 根据Where语句来执行数据删除操作
+     * @param clazz
+     * @param whereClause
+     * @param whereArgs
+     */
+    public void deleteByWhere(Class<?> clazz, String whereClause, String[] whereArgs) {
+        if(mDatabase == null) return;
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        String table = getTableName(clazz);
+        SlowQueryDetector detector = mSlowQuery;
+        long slowStart = detector == null ? 0 : System.nanoTime();
+        int count = mDatabase.delete(table, whereClause, whereArgs);
+        if(detector != null) {
+            String sql = "DELETE FROM " + table + (TextUtils.isEmpty(whereClause) ? "" : " WHERE " + whereClause);
+            detector.check(mDatabase, sql, whereArgs, slowStart);
+        }
+        invalidate(clazz, null);
+        if(listener != null) report(listener, DBListener.Operation.DELETE, table, count, start, 0);
+    }
+    /**
+     * 根据主键ID 执行数据删除操作
+     * @param clazz
+     * @param id
+     * @return 删除的记录数
+     */
+    public int deleteByID(Class<?> clazz, String... id) {
+        if(id == null) return 0;
+        return deleteByIDs(clazz, Arrays.asList(id));
+    }
+
+    /**
+     * 根据主键ID 批量删除数据，按参数个数上限分批使用 主键 IN (?,?...) 删除
+     * @param clazz
+     * @param ids 主键值，与 queryByIds 一样转换为主键字段的原生类型后比较
+     * @return 删除的记录数
+     */
+    public int deleteByIDs(Class<?> clazz, Collection<?> ids) {
+        if(mDatabase == null || ids == null || ids.isEmpty()) return 0;
+        TableInfo info = TableInfo.of(clazz);
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        ColumnInfo primary = info.getPrimary(true);
+        Object[] args = new Object[ids.size()];
+        int i = 0;
+        for(Object id : ids) {
+            if(id == null) {
+                throw new IllegalArgumentException("id is null.");
+            }
+            args[i++] = toPrimaryKey(primary, id);
+        }
+        int batch = Math.min(getMaxVariableNumber(), args.length);
+        int count = 0;
+
+        beginTransaction();
+        try {
+            for(int from = 0; from < args.length; from += batch) {
+                int size = Math.min(batch, args.length - from);
+                String sql = "DELETE FROM " + info.getName() + " WHERE " + info.getPrimaryInClause(size);
+                count += executeUpdateDelete(sql, Arrays.copyOfRange(args, from, from + size));
+            }
+            for(Object id : args) {
+                invalidate(clazz, id);
+            }
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
+        }
+        if(listener != null) report(listener, DBListener.Operation.DELETE, info.getName(), count, start, 0);
+        return count;
+    }
+
+    public <T> List<T> query(Class<T> clazz) {
+        return queryByWhere(clazz, null, null);
+    }
+
+    /**
+     * 根据主键查询数据，开启了对象缓存时优先从缓存中获取
+     * @see #enableObjectCache(Class, int)
+     */
+    public <T> T queryById(Class<T> clazz, String id) {
+        ObjectCache cache = mCaches.isEmpty() ? null : mCaches.get(clazz);
+        if(cache == null || id == null) return queryById(clazz, id, null);
+
+        String key = cacheKey(TableInfo.of(clazz).primary, id);
+        Object cached = cache.get(key);
+        if(cached != null) return clazz.cast(cached);
+        long generation = cache.getGeneration();
+        T t = queryById(clazz, id, null);
+        cache.put(key, t, generation);
+        return t;
+    }
+
+    /**
+     * 根据主键查询数据
+     * @param clazz
+     * @param id
+     * @param columns 需要查询的字段，为 null 时查询全部字段，未查询的成员保持默认值
+     * @return
+     */
+    public <T> T queryById(Class<T> clazz, String id, String[] columns) {
+        if(mDatabase == null) return null;
+        TableInfo info = TableInfo.of(clazz);
+        String sql;
+        if(columns == null || columns.length == 0) {
+            sql = info.getSql(TableInfo.SQL_QUERY_BY_ID);
+        } else {
+            //limit 1 表示只查询一条结果，只为提高性能
+            sql = "SELECT " + info.getSelection(columns) + " FROM " + info.getName()
+                    + " WHERE " + info.getPrimary(true).name + "=? limit 1";
+        }
+
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        Cursor cursor = mDatabase.rawQuery(sql, new String[]{id});
+        T t = null;
+        long mapping = 0;
+        while(cursor.moveToNext()) {
+            long mapStart = listener == null ? 0 : System.nanoTime();
+            t = clazz.cast(info.buildObject(cursor));
+            if(listener != null) mapping = System.nanoTime() - mapStart;
+            break;
+        }
+        cursor.close();
+        if(listener != null) report(listener, DBListener.Operation.QUERY, info.getName(), t == null ? 0 : 1, start, mapping);
+        return t;
+    }
+
+    /**
+     * 根据主键批量查询数据，按参数个数上限分批使用 主键 IN (?,?...) 查询。
+     * 开启了对象缓存时，缓存中已有的对象不再查询
+     * @param clazz
+     * @param ids 主键值，转换为主键字段的原生类型后比较，如 Integer 7、Long 7、"007" 对整数主键是同一个值
+     * @return 主键值 -> 数据对象，按 ids 的顺序排列，不存在的主键不在其中
+     */
+    public <K, T> Map<K, T> queryByIds(Class<T> clazz, Collection<K> ids) {
+        Map<K, T> result = new LinkedHashMap<K, T>();
+        if(mDatabase == null || ids == null || ids.isEmpty()) return result;
+
+        TableInfo info = TableInfo.of(clazz);
+        ColumnInfo primary = info.getPrimary(true);
+        ObjectCache cache = mCaches.isEmpty() ? null : mCaches.get(clazz);
+        long generation = cache == null ? 0 : cache.getGeneration();
+
+        //按主键的原生类型匹配，与数据库中读取出来的主键一致
+        Map<Object, T> found = new HashMap<Object, T>();
+        Set<Object> requested = new HashSet<Object>();
+        List<Object> missing = new ArrayList<Object>();
+        for(K id : ids) {
+            if(id == null) {
+                throw new IllegalArgumentException("id is null.");
+            }
+            Object key = toPrimaryKey(primary, id);
+            if(!requested.add(key)) continue;
+            Object cached = cache == null ? null : cache.get(key.toString());
+            if(cached != null) {
+                found.put(key, clazz.cast(cached));
+            } else {
+                missing.add(key);
+            }
+        }
+
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        long mapping = 0;
+        int rows = 0;
+        Object[] args = missing.toArray();
+        int batch = Math.max(1, Math.min(getMaxVariableNumber(), args.length));
+        for(int from = 0; from < args.length; from += batch) {
+            int size = Math.min(batch, args.length - from);
+            Cursor cursor = rawQueryWithArgs("SELECT * FROM " + info.getName() + " WHERE " + info.getPrimaryInClause(size),
+                    Arrays.copyOfRange(args, from, from + size));
+            try {
+                int[] indexes = info.getColumnIndexes(cursor);
+                int primaryIndex = cursor.getColumnIndex(primary.name);
+                while(cursor.moveToNext()) {
+                    long mapStart = listener == null ? 0 : System.nanoTime();
+                    T t = clazz.cast(info.buildObject(cursor, indexes));
+                    if(listener != null) mapping += System.nanoTime() - mapStart;
+                    if(t == null) continue;
+                    rows++;
+                    Object key = readPrimaryKey(primary, cursor, primaryIndex);
+                    found.put(key, t);
+                    if(cache != null) cache.put(key.toString(), t, generation);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        if(listener != null && args.length > 0) {
+            report(listener, DBListener.Operation.QUERY, info.getName(), rows, start, mapping);
+        }
+
+        for(K id : ids) {
+            T t = found.get(toPrimaryKey(primary, id));
+            if(t != null) result.put(id, t);
+        }
+        return result;
+    }
+
+    /**
+     * 将主键值转换为主键字段的原生类型：整数为 Long，浮点数为 Double，其他为 String
+     */
+    private static Object toPrimaryKey(ColumnInfo primary, Object id) {
+        Object value = primary.toDatabase(id);
+        try {
+            switch (primary.getDBType()) {
+                case INT:
+                case LONG:
+                    return value instanceof Number ? ((Number) value).longValue() : Long.valueOf(value.toString().trim());
+                case FLOAT:
+                case DOUBLE:
+                    return value instanceof Number ? ((Number) value).doubleValue() : Double.valueOf(value.toString().trim());
+                default:
+                    return value.toString();
+            }
+        } catch (NumberFormatException e) {
+            //不是数值的主键不会与整数、浮点数主键相等，按字符串匹配
+            return value.toString();
+        }
+    }
+
+    /**
+     * 按主键字段的原生类型读取主键，与 toPrimaryKey 的结果可以直接比较
+     */
+    private static Object readPrimaryKey(ColumnInfo primary, Cursor cursor, int index) {
+        switch (primary.getDBType()) {
+            case INT:
+            case LONG: return cursor.getLong(index);
+            case FLOAT:
+            case DOUBLE: return cursor.getDouble(index);
+            default: return cursor.getString(index);
+        }
     }
 
     /**
-     * 将类转换成 ContentValues 类型
-     * @param t
-     * @param <T>
-     * @return
+     * 按 Query 构造的条件查询数据，参数按原生类型绑定
+     * @see Query
      */
-    public static <T> ContentValues getContentValues(T t, String[] ignoreColumn) {
-        Class<?> clazz = t.getClass();
-        ContentValues values = new ContentValues();
-        for(Field field : clazz.getDeclaredFields()) {
-            Column column = field.getAnnotation(Column.class);
-            if(column == null) continue;
-            if(isIgnoreColumn(ignoreColumn, column)) continue;
-
-            String tmp = getFieldValue(clazz, column, field, t);
-            if(tmp != null) {
-                values.put(column.value(), tmp);
-            }
-        }
-        return values;
+    public <T> List<T> query(Query<T> query) {
+        return query(query.compile());
     }
 
     /**
-     * 使用数据对象的字段作为删除条件
-     * @param list
+     * 使用新的参数执行已生成的查询
+     * @param args 按条件的顺序排列的新参数，为空时使用构造查询时的参数
      */
-    public <T> void delete(T... list) {
-        if(mDatabase == null || list == null || list.length == 0) return;
+    public <T> List<T> query(CompiledQuery<T> query, Object... args) {
+        if(mDatabase == null) return new ArrayList<T>();
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        Cursor cursor = rawQueryWithArgs(query.getSql(), query.getArgs(args));
+        List<T> list = readObjects(query.clazz, cursor, query.info.getName(), listener, start);
+        cursor.close();
+        return list;
+    }
 
-        Class<?> clazz = list[0].getClass();
-        Table table = getTable(clazz);
-        Field[] fields = clazz.getDeclaredFields();
+    public int getCount(Query<?> query) {
+        return getCount(query.compile());
+    }
 
-        beginTransaction();
+    /**
+     * @return 满足查询条件的记录数，有 limit、offset 时为分页后的记录数
+     */
+    public int getCount(CompiledQuery<?> query, Object... args) {
+        if(mDatabase == null) return 0;
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        int count = (int) simpleQueryForLong(query.getCountSql(), query.getArgs(args));
+        if(listener != null) report(listener, DBListener.Operation.QUERY, query.info.getName(), 1, start, 0);
+        return count;
+    }
 
-        String whereClause = null;
-        String[] whereArgs = null;
-        for(T t : list) {
-            if(t == null) continue;
-            checkClass(t, clazz);
+    public int deleteByQuery(Query<?> query) {
+        return deleteByQuery(query.compile());
+    }
 
-            if(whereClause == null) {
-                int i = 0;
-                StringBuilder clause = new StringBuilder();
-                for(Field field : fields) {
-                    Column column = field.getAnnotation(Column.class);
-                    if(column != null) {
-                        clause.append(column.value()).append("=? and ");
-                        i++;
-                    }
-                }
-                clause.append("1=1");//以免多出一个 and 关键字
-                whereClause = clause.toString();
-                whereArgs = new String[i];
-            }
+    /**
+     * 删除满足查询条件的记录，有 orderBy、limit 时只删除排序分页后的记录
+     * @return 删除的记录数
+     */
+    public int deleteByQuery(CompiledQuery<?> query, Object... args) {
+        if(mDatabase == null) return 0;
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        int count = executeUpdateDelete(query.getDeleteSql(), query.getArgs(args));
+        invalidate(query.clazz, null);
+        if(listener != null) report(listener, DBListener.Operation.DELETE, query.info.getName(), count, start, 0);
+        return count;
+    }
 
-            int i = 0;
-            for(Field field : fields) {
-                Column column = field.getAnnotation(Column.class);
-                if(column != null) {
-                    whereArgs[i++] = getFieldValue(clazz, column, field, t);
-                }
-            }
-            mDatabase.delete(table.value(), whereClause, whereArgs);
-        }
-        setTransactionSuccessful();
-        endTransaction();
+    public <T> List<T> queryByWhere(Class<T> clazz, String whereClause, String[] whereArgs) {
+        return queryByWhere(clazz, null, whereClause, whereArgs);
     }
 
     /**
-     * 删除表中的全部数据
+     * 只查询部分字段，未查询的成员保持默认值
      * @param clazz
+     * @param columns 需要查询的字段，为 null 时查询全部字段
+     * @param whereClause
+     * @param whereArgs
+     * @return
      */
-    public void deleteAll(Class<?> clazz) {
-    	deleteByWhere(clazz, null, null);
+    public <T> List<T> queryByWhere(Class<T> clazz, String[] columns, String whereClause, String[] whereArgs) {
+        if (mDatabase == null) return new ArrayList<T>();
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        Cursor cursor = getQueryCursor(clazz, columns, whereClause, whereArgs);
+        List<T> list = readObjects(clazz, cursor, getTableName(clazz), listener, start);
+        cursor.close();
+        return list;
     }
-    
+
     /**
-     * 根据Where语句来执行数据删除操作
-     * @param clazz
+     * 从 tableClass 对应的表中只查询 projection 类中定义的字段，并映射为 projection 对象
+     * @param tableClass 带有 Table 注解的类
+     * @param projection 只包含部分 Column 字段的类，字段名称必须在 tableClass 中存在
      * @param whereClause
      * @param whereArgs
+     * @return
      */
-    public void deleteByWhere(Class<?> clazz, String whereClause, String[] whereArgs) {
-        if(mDatabase == null) return;
-        mDatabase.delete(getTableName(clazz), whereClause, whereArgs);
+    public <P> List<P> queryProjection(Class<?> tableClass, Class<P> projection, String whereClause, String[] whereArgs) {
+        if (mDatabase == null) return new ArrayList<P>();
+        String[] columns = TableInfo.of(projection).getColumnNames();
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        Cursor cursor = getQueryCursor(tableClass, columns, whereClause, whereArgs);
+        List<P> list = readObjects(projection, cursor, getTableName(tableClass), listener, start);
+        cursor.close();
+        return list;
+    }
+
+    public <T> Page<T> queryPage(Class<T> clazz, int pageSize, String orderColumn, boolean asc, String token) {
+        return queryPage(clazz, null, null, pageSize, orderColumn, asc, token);
     }
+
     /**
-     * 根据主键ID 执行数据删除操作
-     * @param clazz
-     * @param id
+     * 分页查询。使用上一页最后一行的排序值来定位下一页（keyset 分页），而不是 OFFSET，
+     * 翻到再后面的页也不会变慢。排序值相同的数据按主键排序
+     * @param clazz 必须有主键
+     * @param whereClause 额外的查询条件，可以为 null
+     * @param whereArgs
+     * @param pageSize 每页的数据条数
+     * @param orderColumn 排序字段，为 null 时按主键排序。该字段的值不能为 NULL
+     * @param asc 是否升序
+     * @param token 上一页的 Page.getNextToken()，查询第一页时为 null
+     * @return
      */
-    public void deleteByID(Class<?> clazz, String... id) {
-        if(mDatabase == null) return;
-        String whereClause = getPrimaryColumn(clazz, true).value() + "=?";
-        String table = getTableName(clazz);
-        beginTransaction();
-        for(String i : id) {
-            mDatabase.delete(table, whereClause, new String[]{i});
+    public <T> Page<T> queryPage(Class<T> clazz, String whereClause, String[] whereArgs,
+                                 int pageSize, String orderColumn, boolean asc, String token) {
+        if(pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be greater than 0.");
+        }
+        if(mDatabase == null) return new Page<T>(new ArrayList<T>(), null);
+
+        TableInfo info = TableInfo.of(clazz);
+        ColumnInfo primary = info.getPrimary(true);
+        ColumnInfo order = orderColumn == null ? primary : info.getColumn(orderColumn);
+        if(order == null) {
+            throw new DatabaseException("No column " + orderColumn + " in the Table " + info.getName());
+        }
+        boolean byPrimary = order == primary;
+
+        List<Object> args = new ArrayList<Object>();
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(info.getName());
+        StringBuilder where = new StringBuilder();
+        if(!TextUtils.isEmpty(whereClause)) {
+            where.append('(').append(whereClause).append(')');
+            if(whereArgs != null) {
+                for(String arg : whereArgs) args.add(arg);
+            }
+        }
+        if(token != null) {
+            if(where.length() > 0) where.append(" AND ");
+            String op = asc ? ">" : "<";
+            //按字段的原生类型绑定，浮点数的排序值与数据库中的值完全相等
+            if(byPrimary) {
+                where.append(primary.name).append(op).append('?');
+                args.add(parsePageValue(primary, token));
+            } else {
+                String[] values = decodePageToken(token);
+                Object value = parsePageValue(order, values[0]);
+                where.append('(').append(order.name).append(op).append("? OR (")
+                        .append(order.name).append("=? AND ").append(primary.name).append(op).append("?))");
+                args.add(value);
+                args.add(value);
+                args.add(parsePageValue(primary, values[1]));
+            }
+        }
+        if(where.length() > 0) {
+            sql.append(" WHERE ").append(where);
+        }
+        String direction = asc ? " ASC" : " DESC";
+        sql.append(" ORDER BY ").append(order.name).append(direction);
+        if(!byPrimary) {
+            sql.append(',').append(primary.name).append(direction);
+        }
+        sql.append(" LIMIT ").append(pageSize + 1); //多查一条来判断是否还有下一页
+
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        long mapping = 0;
+        Cursor cursor = rawQueryWithArgs(sql.toString(), args.toArray());
+        List<T> list = new ArrayList<T>(pageSize);
+        String nextToken = null;
+        try {
+            int orderIndex = cursor.getColumnIndex(order.name);
+            int primaryIndex = cursor.getColumnIndex(primary.name);
+            int[] indexes = info.getColumnIndexes(cursor);
+            String lastOrder = null, lastPrimary = null;
+            while(cursor.moveToNext()) {
+                if(list.size() == pageSize) {
+                    nextToken = byPrimary ? lastPrimary : encodePageToken(lastOrder, lastPrimary);
+                    break;
+                }
+                long mapStart = listener == null ? 0 : System.nanoTime();
+                Object t = info.buildObject(cursor, indexes);
+                if(listener != null) mapping += System.nanoTime() - mapStart;
+                if(t != null) {
+                    list.add(clazz.cast(t));
+                }
+                lastOrder = readPageValue(order, cursor, orderIndex);
+                lastPrimary = readPageValue(primary, cursor, primaryIndex);
+                if(lastOrder == null || lastPrimary == null) {
+                    throw new DatabaseException("Page column " + order.name + " can not be null.");
+                }
+            }
+        } finally {
+            cursor.close();
         }
-        setTransactionSuccessful();
-        endTransaction();
+        if(listener != null) report(listener, DBListener.Operation.QUERY, info.getName(), list.size(), start, mapping);
+        return new Page<T>(list, nextToken);
     }
 
-    public <T> List<T> query(Class<T> clazz) {
-        return queryByWhere(clazz, null, null);
+    /**
+     * 分页标记的格式：排序值的长度:排序值主键值
+     */
+    static String encodePageToken(String order, String primary) {
+        return order.length() + ":" + order + primary;
     }
 
-    public <T> T queryById(Class<T> clazz, String id) {
-        if(mDatabase == null) return null;
-        String whereClause = null;
-        for(Field field : clazz.getDeclaredFields()) {
-            Column column = field.getAnnotation(Column.class);
-            if(column != null && column.isPrimary()) {
-                whereClause = column.value() + "=? limit 1"; //limit 1 表示只查询一条结果，只为提高性能
-                break;
-            }
+    static String[] decodePageToken(String token) {
+        try {
+            int i = token.indexOf(':');
+            int length = Integer.parseInt(token.substring(0, i));
+            int start = i + 1;
+            return new String[]{token.substring(start, start + length), token.substring(start + length)};
+        } catch (RuntimeException e) {
+            throw new DatabaseException("Invalid page token: " + token);
         }
-        if(whereClause == null) {
-            throw new DatabaseException("This table no primary key.");
+    }
+
+    /**
+     * 按字段的原生类型读取排序值并转换为字符串，整数、浮点数的转换都不损失精度
+     * @return 值为 NULL 时返回 null
+     */
+    private static String readPageValue(ColumnInfo column, Cursor cursor, int index) {
+        if(cursor.isNull(index)) return null;
+        switch (column.getDBType()) {
+            case INT:
+            case LONG:
+            case BOOLEAN: return Long.toString(cursor.getLong(index));
+            case FLOAT:
+            case DOUBLE: return Double.toString(cursor.getDouble(index));
+            default: return cursor.getString(index);
         }
+    }
 
-        Cursor cursor = mDatabase.rawQuery(
-                "SELECT * FROM " + getTableName(clazz) + " WHERE " + whereClause, new String[]{id});
-        T t = null;
-        while(cursor.moveToNext()) {
-            t = buildObject(clazz, cursor, null);
-            break;
+    /**
+     * 将分页标记中的值转换为字段的原生类型
+     */
+    static Object parsePageValue(ColumnInfo column, String value) {
+        try {
+            switch (column.getDBType()) {
+                case INT:
+                case LONG:
+                case BOOLEAN: return Long.valueOf(value);
+                case FLOAT:
+                case DOUBLE: return Double.valueOf(value);
+                default: return value;
+            }
+        } catch (NumberFormatException e) {
+            throw new DatabaseException("Invalid page token: " + value);
         }
-        cursor.close();
-        return t;
     }
 
-    public <T> List<T> queryByWhere(Class<T> clazz, String whereClause, String[] whereArgs) {
-        if (mDatabase == null) return new ArrayList<T>();
-        String table = getTableName(clazz);
-        Cursor cursor = TextUtils.isEmpty(whereClause) ?
-                mDatabase.rawQuery("SELECT * FROM " + table, null) :
-                mDatabase.rawQuery("SELECT * FROM " + table + " WHERE " + whereClause, whereArgs);
-        List<T> list = reflectObject(clazz, cursor);
-        cursor.close();
-        return list;
+    public <T> QueryResult<T> iterate(Class<T> clazz) {
+        return iterateByWhere(clazz, null, null, false);
+    }
+
+    /**
+     * 流式查询，遍历到某一行时才映射为数据对象，适用于数据量很大的表
+     * @param clazz
+     * @param whereClause
+     * @param whereArgs
+     * @param reuseObject 是否所有行都复用同一个对象，复用时调用方不能持有遍历得到的对象
+     * @return QueryResult 遍历结束时会自动关闭，提前结束遍历需要执行 close() 操作
+     */
+    public <T> QueryResult<T> iterateByWhere(Class<T> clazz, String whereClause, String[] whereArgs, boolean reuseObject) {
+        return iterateByWhere(clazz, null, whereClause, whereArgs, reuseObject);
+    }
+
+    /**
+     * 只查询部分字段的流式查询
+     * @param columns 需要查询的字段，为 null 时查询全部字段
+     * @see #iterateByWhere(Class, String, String[], boolean)
+     */
+    public <T> QueryResult<T> iterateByWhere(Class<T> clazz, String[] columns, String whereClause, String[] whereArgs,
+                                             boolean reuseObject) {
+        return new QueryResult<T>(clazz, getQueryCursor(clazz, columns, whereClause, whereArgs), reuseObject);
     }
 
     /**
@@ -564,11 +1849,23 @@ public final class DBManager {
      * @return Cursor 需要执行 close() 操作
      */
     public <T> Cursor getQueryCursor(Class<T> clazz, String whereClause, String[] whereArgs) {
+        return getQueryCursor(clazz, null, whereClause, whereArgs);
+    }
+
+    /**
+     * @param clazz
+     * @param columns 需要查询的字段，为 null 时查询全部字段
+     * @param whereClause
+     * @param whereArgs
+     * @return Cursor 需要执行 close() 操作
+     */
+    public <T> Cursor getQueryCursor(Class<T> clazz, String[] columns, String whereClause, String[] whereArgs) {
         if (mDatabase == null) return null;
-        String table = getTableName(clazz);
+        TableInfo info = TableInfo.of(clazz);
+        String select = "SELECT " + info.getSelection(columns) + " FROM " + info.getName();
         Cursor cursor = TextUtils.isEmpty(whereClause) ?
-                mDatabase.rawQuery("SELECT * FROM " + table, null) :
-                mDatabase.rawQuery("SELECT * FROM " + table + " WHERE " + whereClause, whereArgs);
+                queryCursor(select, null) :
+                queryCursor(select + " WHERE " + whereClause, whereArgs);
         return cursor;
     }
 
@@ -578,11 +1875,7 @@ public final class DBManager {
      * @return
      */
     public boolean isEmpty(Class<?> clazz) {
-        Cursor cursor = mDatabase.rawQuery("SELECT 1 FROM " + getTableName(clazz) + " LIMIT 1", null);
-        if(cursor == null) return true;
-        int size = cursor.getCount();
-        cursor.close();
-        return size <= 0;
+        return simpleQueryForLong(TableInfo.of(clazz).getSql(TableInfo.SQL_EXISTS)) == 0;
     }
 
     /**
@@ -591,265 +1884,221 @@ public final class DBManager {
      * @return
      */
     public int getCount(Class<?> clazz) {
-        Cursor cursor = mDatabase.rawQuery("SELECT COUNT(1) FROM " + getTableName(clazz), null);
-        if(cursor == null) return 0;
-        int i = 0;
-        if(0 != cursor.getCount()) {
-            cursor.moveToFirst();
-            i = cursor.getInt(0);
-        }
-        cursor.close();
-        return i;
+        TableInfo info = TableInfo.of(clazz);
+        DBListener listener = mListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        int count = (int) simpleQueryForLong(info.getSql(TableInfo.SQL_COUNT));
+        if(listener != null) report(listener, DBListener.Operation.QUERY, info.getName(), 1, start, 0);
+        return count;
     }
 
+    /**
+     * 在当前线程开启事务。已经在事务中时通过 SAVEPOINT 开启嵌套事务，
+     * 嵌套事务只在最外层事务提交时才会真正提交，没有调用 setTransactionSuccessful 时只回滚嵌套事务中的修改。
+     * 并发模式下使用 IMMEDIATE 事务，事务期间其他线程依然可以查询。
+     * 每次调用都必须对应一次 endTransaction
+     */
     public void beginTransaction() {
-        if(isBeginTransaction) return;
-        mDatabase.beginTransaction();
-        isBeginTransaction = true;
+        TransactionState state = mTransaction.get();
+        if(state == null) {
+            long start = mListener == null ? 0 : System.nanoTime();
+            if(mConcurrent) {
+                mDatabase.beginTransactionNonExclusive();
+            } else {
+                mDatabase.beginTransaction();
+            }
+            state = new TransactionState();
+            state.startNanos = start;
+            mTransaction.set(state);
+        } else {
+            mDatabase.execSQL("SAVEPOINT " + state.nextSavepoint());
+            state.depth++;
+        }
     }
 
+    /**
+     * 结束当前线程最内层的事务。
+     * 标记成功的嵌套事务会合并到外层事务中，否则回滚到开启嵌套事务之前
+     */
     public void endTransaction() {
-        if(isBeginTransaction) {
-            mDatabase.endTransaction();
+        TransactionState state = mTransaction.get();
+        if(state == null) return;
+
+        boolean successful = state.successful[state.depth];
+        state.successful[state.depth] = false;
+        if(state.depth == 0) {
+            mTransaction.remove();
+            try {
+                mDatabase.endTransaction();
+            } finally {
+                for(ObjectCache cache : state.dirtyCaches) {
+                    cache.clear();
+                }
+            }
+            DBListener listener = mListener;
+            if(listener != null && state.startNanos != 0) {
+                try {
+                    listener.onTransaction(System.nanoTime() - state.startNanos, successful);
+                } catch (RuntimeException e) {
+                    Logger.e(e);
+                }
+            }
+            return;
+        }
+        state.depth--;
+        String savepoint = state.nextSavepoint();
+        if(!successful) {
+            //Android 9 以下会把 ROLLBACK 开头的语句当作结束整个事务，加上 ; 前缀交给 SQLite 执行
+            mDatabase.execSQL(";ROLLBACK TO " + savepoint);
         }
-        isBeginTransaction = false;
+        mDatabase.execSQL("RELEASE " + savepoint);
     }
 
+    /**
+     * 标记当前线程最内层的事务执行成功
+     */
     public void setTransactionSuccessful() {
-        if(isBeginTransaction && mDatabase != null && mDatabase.inTransaction()) {
+        TransactionState state = mTransaction.get();
+        if(state == null) return;
+
+        if(state.successful[state.depth]) return;
+        state.successful[state.depth] = true;
+        if(state.depth == 0) {
             mDatabase.setTransactionSuccessful();
-        } else {
-            isBeginTransaction = false;
         }
     }
 
-    public void execSQL(String sql) {
-      if(showLog) Logger.d(sql);
-        mDatabase.execSQL(sql);
-    }
-
-    public Cursor rawQuery(String sql, String[] selectArgs) {
-        if(showLog) Logger.d(sql, selectArgs);
-        return mDatabase.rawQuery(sql, selectArgs);
+    /**
+     * @return 当前线程是否在事务中
+     */
+    public boolean inTransaction() {
+        return mTransaction.get() != null;
     }
 
     /**
-     * 将查询结果映射为数据对象
-     * @param clazz
-     * @param cursor
-     * @return
+     * 在事务中执行 runnable，执行成功后提交，抛出异常时回滚。
+     * 已经在事务中时作为嵌套事务执行，只回滚 runnable 中的修改
      */
-    public static final <T> List<T> reflectObject(Class<T> clazz, Cursor cursor) {
-        List<T> list = new ArrayList<T>();
-        Field[] fields = clazz.getDeclaredFields();
-        while(cursor.moveToNext()) {
-            T t = buildObject(clazz, cursor, fields);
-            if(t != null) {
-                list.add(t);
+    public void runInTransaction(final Runnable runnable) {
+        runInTransaction(new Callable<Void>() {
+            @Override
+            public Void call() {
+                runnable.run();
+                return null;
             }
-        }
-        return list;
+        });
     }
 
-    public static final <T> T buildObject(Class<T> clazz, Cursor cursor, Field[] fields) {
-        T t;
+    /**
+     * 在事务中执行 callable，执行成功后提交并返回结果，抛出异常时回滚。
+     * 已经在事务中时作为嵌套事务执行，只回滚 callable 中的修改
+     * @throws DatabaseException callable 抛出的受检异常
+     */
+    public <V> V runInTransaction(Callable<V> callable) {
+        beginTransaction();
         try {
-            t = clazz.newInstance();
+            V result = callable.call();
+            setTransactionSuccessful();
+            return result;
+        } catch (RuntimeException e) {
+            throw e;
         } catch (Exception e) {
-            Logger.e(e);
-            return null;
-        }
-        if(fields == null) {
-            fields = clazz.getDeclaredFields();
+            throw new DatabaseException(e);
+        } finally {
+            endTransaction();
         }
+    }
 
-        int index;
-        for(Field field : fields) {
-            Column column = field.getAnnotation(Column.class);
-            if(column == null) continue;
-
-            index = cursor.getColumnIndex(column.value());
-            if(index == -1) continue;
-
-            if(!TextUtils.isEmpty(column.set())) {
-                try {
-                    switch (column.type()) {
-                        case TEXT :
-                            Method method = clazz.getMethod(column.set(), String.class);
-                            method.invoke(t, cursor.getString(index));
-                            break;
-                        case INT:
-                            method = clazz.getMethod(column.set(), Integer.TYPE);
-                            method.invoke(t, cursor.getInt(index));
-                            break;
-                        case DOUBLE:
-                            method = clazz.getMethod(column.set(), Double.TYPE);
-                            method.invoke(t, cursor.getDouble(index));
-                            break;
-                        case FLOAT:
-                            method = clazz.getMethod(column.set(), Float.TYPE);
-                            method.invoke(t, cursor.getFloat(index));
-                            break;
-                        case BOOLEAN:
-                            method = clazz.getMethod(column.set(), Boolean.TYPE);
-                            String v = cursor.getString(index);
-                            method.invoke(t, "1".equals(v) ? true : Boolean.parseBoolean(v));
-                            break;
-                        case CHAR:
-                            method = clazz.getMethod(column.set(), Character.TYPE);
-                            method.invoke(t, cursor.getString(index).charAt(0));
-                            break;
-                        case LONG:
-                            method = clazz.getMethod(column.set(), Long.TYPE);
-                            method.invoke(t, cursor.getLong(index));
-                            break;
-                        default:
-                            throw new DatabaseException("This Field not set type.");
-                    }
-                } catch (Exception e) {
-                    Logger.w(field);
-                    Logger.e(e);
-                }
-                continue;
-            }
-
-            field.setAccessible(true);
-            Class<?> type = field.getType();
+    /**
+     * @return 当前数据库使用的 SQLite 版本，如 3.24.0 返回 3024000；查询失败返回 -1
+     */
+    int getSQLiteVersion() {
+        if(mSQLiteVersion == 0) {
+            int version = -1;
+            SQLiteStatement statement = null;
             try {
-                if(type == Integer.TYPE) {
-                    field.setInt(t, cursor.getInt(index));
-                }else if(type == Integer.class) {
-                    field.set(t, cursor.getInt(index));
-                } else if(type == Long.TYPE) {
-                    field.setLong(t, cursor.getLong(index));
-                } else if(type == Long.class) {
-                    field.set(t, cursor.getLong(index));
-                } else if(type == String.class) {
-                    field.set(t, cursor.getString(index));
-                } else if(type == Character.TYPE) {
-                    field.setChar(t, cursor.getString(index).charAt(0));
-                } else if(type == Character.class) {
-                    field.set(t, cursor.getString(index).charAt(0));
-                } else if(type == Double.TYPE) {
-                    field.setDouble(t, cursor.getDouble(index));
-                } else if(type == Double.class) {
-                    field.set(t, cursor.getDouble(index));
-                } else if(type == Boolean.TYPE || type == Boolean.class) {
-                    String v = cursor.getString(index);
-                    field.setBoolean(t, "1".equals(v) ? true : Boolean.parseBoolean(v));
-                } else if(type == Float.TYPE) {
-                    field.setFloat(t, cursor.getFloat(index));
-                } else if(type == Float.class) {
-                    field.set(t, cursor.getFloat(index));
-                } else if(type == Short.TYPE) {
-                    field.setShort(t, cursor.getShort(index));
-                } else if(type == Short.class) {
-                    field.set(t, cursor.getShort(index));
-                } else if(type == Byte.TYPE) {
-                    field.setByte(t, (byte)cursor.getInt(index));
-                } else if(type == Byte.class) {
-                    field.set(t, (byte) cursor.getInt(index));
-                } else if(type.isEnum()) {
-                    String s = cursor.getString(index);
-                    Object[] tt = type.getEnumConstants();
-                    for(Object oo : tt) {
-                        if(s.equals(oo.toString())) {
-                            field.set(t, oo);
-                            break;
-                        }
-                    }
-                } else {
-                    //TODO... 其他类型
+                statement = mDatabase.compileStatement("SELECT sqlite_version()");
+                String[] parts = statement.simpleQueryForString().split("\\.");
+                version = 0;
+                for(int i = 0; i < 3; i++) {
+                    version = version * 1000 + (i < parts.length ? Integer.parseInt(parts[i]) : 0);
                 }
             } catch (Exception e) {
-                Logger.w(field);
                 Logger.e(e);
+                version = -1;
+            } finally {
+                if(statement != null) {
+                    statement.close();
+                }
             }
+            mSQLiteVersion = version;
         }
-        return t;
+        return mSQLiteVersion;
     }
 
-    private static final DBType getDBType(Column column, Class<?> type) {
-        if(column.type() != DBType.NONE) {
-            return column.type();
-        }
-
-        if(Integer.TYPE == type || Integer.class == type) return DBType.INT;
-        if(Double.TYPE == type || Double.class == type) return DBType.DOUBLE;
-        if(Character.TYPE == type || Character.class == type) return DBType.CHAR;
-        if(Long.TYPE == type || Long.class == type) return DBType.LONG;
-        if(Short.TYPE == type || Short.class == type) return DBType.INT;
-        if(Float.TYPE == type || Float.class == type) return DBType.FLOAT;
-        if(Boolean.TYPE == type || Boolean.class == type) return DBType.BOOLEAN;
-        if(Byte.TYPE == type || Byte.class == type) return DBType.INT;
-        if(CharSequence.class.isAssignableFrom(type)) return DBType.TEXT;
-        if(type.isEnum()) return DBType.TEXT;
+    public void execSQL(String sql) {
+      if(showLog) Logger.d(sql);
+        mDatabase.execSQL(sql);
+        invalidateAll();
+    }
 
-        throw new DatabaseException(type + " no support to mapping.");
+    public Cursor rawQuery(String sql, String[] selectArgs) {
+        if(showLog) Logger.d(sql, selectArgs);
+        return queryCursor(sql, selectArgs);
     }
 
-    private static final <T> void setObjectValue(Field field, T t, Object value) {
-        field.setAccessible(true);
-        Class<?> type = field.getType();
-        try {
-            if(type == Integer.TYPE) {
-                field.setInt(t, Integer.parseInt(value.toString()));
-            } else if(type == Long.TYPE) {
-                field.setLong(t, Long.parseLong(value.toString()));
-            } else if(type == String.class) {
-                field.set(t, value);
-            } else if(type == Character.TYPE) {
-                field.setChar(t, (Character) value);
-            } else if(type == Double.TYPE) {
-                field.setDouble(t, (Double) value);
-            } else if(type == Boolean.TYPE) {
-                field.setBoolean(t, (Boolean) value);
-            } else if(type == Float.TYPE) {
-                field.setFloat(t, (Float) value);
-            } else if(type == Short.TYPE) {
-                field.setShort(t, (Short) value);
-            } else if(type == Byte.TYPE) {
-                field.setByte(t, (Byte) value);
-            } else {
-                field.set(t, value);
+    /**
+     * 将查询结果映射为数据对象，有监听时统计映射的耗时并报告这次查询
+     * @param table 查询的表名
+     * @param start 查询开始时的 System.nanoTime()
+     */
+    private static <T> List<T> readObjects(Class<T> clazz, Cursor cursor, String table, DBListener listener, long start) {
+        if(listener == null) return reflectObject(clazz, cursor);
+
+        List<T> list = new ArrayList<T>();
+        TableInfo info = TableInfo.of(clazz);
+        int[] indexes = info.getColumnIndexes(cursor);
+        long mapping = 0;
+        while(cursor.moveToNext()) {
+            long mapStart = System.nanoTime();
+            Object t = info.buildObject(cursor, indexes);
+            mapping += System.nanoTime() - mapStart;
+            if(t != null) {
+                list.add(clazz.cast(t));
             }
-        } catch (Exception e) {
-            Logger.w(field);
-            Logger.e(e);
         }
+        report(listener, DBListener.Operation.QUERY, table, list.size(), start, mapping);
+        return list;
     }
 
-    private static final <T> String getFieldValue(Class<?> clazz, Column column, Field field, T t) {
-        if(!TextUtils.isEmpty(column.get())) {
-            try {
-                Method method = clazz.getMethod(column.get());
-                Object obj = method.invoke(t);
-                if(obj == null) return null;
-                return obj.toString();
-            } catch (Exception e) {
-                Logger.e(e);
-                return null;
+    /**
+     * 将查询结果映射为数据对象
+     * @param clazz
+     * @param cursor
+     * @return
+     */
+    public static final <T> List<T> reflectObject(Class<T> clazz, Cursor cursor) {
+        List<T> list = new ArrayList<T>();
+        TableInfo info = TableInfo.of(clazz);
+        int[] indexes = info.getColumnIndexes(cursor);
+        while(cursor.moveToNext()) {
+            Object t = info.buildObject(cursor, indexes);
+            if(t != null) {
+                list.add(clazz.cast(t));
             }
         }
-
-        field.setAccessible(true);
-        try {
-            Object obj = field.get(t);
-            return obj == null ? "" : obj.toString();
-        } catch (IllegalAccessException e1) {
-            Logger.e(e1);
-        } catch (IllegalArgumentException e1) {
-            Logger.e(e1);
-        }
-        return null;
+        return list;
     }
 
-    private static final Table getTable(Class<?> clazz) {
-        Table table = clazz.getAnnotation(Table.class);
-        if(table == null) {
-            throw new DatabaseException("Class " + clazz + " not have Table Annotation!");
-        }
-        return table;
+    /**
+     * 将 cursor 的当前行映射为数据对象
+     * @param clazz
+     * @param cursor
+     * @param fields 已不再使用，字段信息由每个类缓存的映射信息提供
+     * @return
+     */
+    public static final <T> T buildObject(Class<T> clazz, Cursor cursor, Field[] fields) {
+        return clazz.cast(TableInfo.of(clazz).buildObject(cursor));
     }
 
     private static final <T> void checkClass(T t, Class<?> clazz) {
@@ -859,33 +2108,56 @@ public final class DBManager {
     }
 
     public static final String getTableName(Class<?> clazz) {
-        return getTable(clazz).value();
+        return TableInfo.of(clazz).getName();
     }
 
-    private static final boolean isIgnoreColumn(String[] columns, Column column) {
+    private static final boolean isIgnoreColumn(String[] columns, ColumnInfo column) {
         if(columns == null) return false;
         for(String s : columns) {
-            if(s.equals(column.value())) return true;
+            if(s.equals(column.name)) return true;
         }
         return false;
     }
 
     /**
-     *
-     * @param clazz
-     * @param throwError 没有找到主键信息，是否要抛出异常
-     * @return
+     * PRAGMA TABLE_INFO 中的字段信息
      */
-    private Column getPrimaryColumn(Class<?> clazz, boolean throwError) {
-        for(Field field : clazz.getDeclaredFields()) {
-            Column column = field.getAnnotation(Column.class);
-            if(column != null && column.isPrimary()) {
-                return column;
-            }
+    private static final class TableColumn {
+        final String name;
+        final String type;
+        final boolean primary;
+        /** 默认值的表达式，没有默认值时为 null */
+        final String defValue;
+
+        TableColumn(String name, String type, boolean primary, String defValue) {
+            this.name = name;
+            this.type = type;
+            this.primary = primary;
+            this.defValue = defValue;
         }
-        if(throwError) {
-            throw new DatabaseException("This table no primary key.");
+    }
+
+    /**
+     * 一个线程中的事务嵌套信息
+     */
+    private static final class TransactionState {
+        /** 嵌套的层数，0 表示最外层事务 */
+        int depth;
+        /** 开启最外层事务时的 System.nanoTime()，没有监听时为 0 */
+        long startNanos;
+        /** 每一层事务是否已经标记成功 */
+        boolean[] successful = new boolean[8];
+        /** 事务中修改过的表的对象缓存，事务结束后需要清空 */
+        final Set<ObjectCache> dirtyCaches = new HashSet<ObjectCache>();
+
+        /**
+         * @return 第 depth + 1 层嵌套事务使用的 SAVEPOINT 名称，同时确保有记录该层状态的空间
+         */
+        String nextSavepoint() {
+            if(depth + 1 >= successful.length) {
+                successful = Arrays.copyOf(successful, successful.length * 2);
+            }
+            return "jacky_sp" + (depth + 1);
         }
-        return null;
     }
 }
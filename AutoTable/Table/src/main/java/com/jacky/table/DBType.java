@@ -12,7 +12,8 @@ public enum DBType implements Unproguard {
     BOOLEAN("BOOLEAN"),
     CHAR("CHAR(1)"),
     FLOAT("FLOAT"),
-    DOUBLE("DOUBLE");
+    DOUBLE("DOUBLE"),
+    BLOB("BLOB");
 
     private String value;
 
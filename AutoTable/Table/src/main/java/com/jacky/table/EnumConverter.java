@@ -0,0 +1,67 @@
+package com.jacky.table;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 枚举成员的转换器。每个枚举类型只创建一次查找表，读取时不需要遍历、复制枚举常量数组
+ */
+final class EnumConverter implements TypeConverter<Object, Object> {
+
+    private static final ConcurrentHashMap<Class<?>, EnumConverter> sNames =
+            new ConcurrentHashMap<Class<?>, EnumConverter>();
+    private static final ConcurrentHashMap<Class<?>, EnumConverter> sOrdinals =
+            new ConcurrentHashMap<Class<?>, EnumConverter>();
+
+    private final Object[] constants;
+    private final Map<String, Object> names;
+    private final boolean byOrdinal;
+
+    private EnumConverter(Class<?> type, boolean byOrdinal) {
+        this.byOrdinal = byOrdinal;
+        this.constants = type.getEnumConstants();
+        this.names = new HashMap<String, Object>(constants.length * 2);
+        for(Object o : constants) {
+            //与保存时一致，按 toString() 的结果查找
+            if(!names.containsKey(o.toString())) names.put(o.toString(), o);
+        }
+    }
+
+    /**
+     * @param type 枚举类型
+     */
+    static EnumConverter of(Class<?> type, EnumType enumType) {
+        boolean byOrdinal = enumType == EnumType.ORDINAL;
+        ConcurrentHashMap<Class<?>, EnumConverter> cache = byOrdinal ? sOrdinals : sNames;
+        EnumConverter converter = cache.get(type);
+        if(converter == null) {
+            converter = new EnumConverter(type, byOrdinal);
+            EnumConverter old = cache.putIfAbsent(type, converter);
+            if(old != null) converter = old;
+        }
+        return converter;
+    }
+
+    @Override
+    public DBType getDBType() {
+        return byOrdinal ? DBType.INT : DBType.TEXT;
+    }
+
+    @Override
+    public Object toDatabase(Object value) {
+        return byOrdinal ? Integer.valueOf(((Enum<?>) value).ordinal()) : value.toString();
+    }
+
+    /**
+     * @return 没有匹配的枚举值时返回 null
+     */
+    @Override
+    public Object fromDatabase(Object value) {
+        if(byOrdinal) {
+            int ordinal = (Integer) value;
+            return ordinal >= 0 && ordinal < constants.length ? constants[ordinal] : null;
+        }
+        return names.get(value);
+    }
+}
@@ -0,0 +1,13 @@
+package com.jacky.table;
+
+/**
+ * 枚举成员保存到数据库中的方式
+ */
+public enum EnumType implements Unproguard {
+
+    /** 保存 toString() 的结果，字段类型为 TEXT */
+    NAME,
+    /** 保存 ordinal()，字段类型为 INTEGER。调整枚举常量的顺序会改变已保存数据的含义 */
+    ORDINAL
+
+}
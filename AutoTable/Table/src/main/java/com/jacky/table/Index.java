@@ -0,0 +1,33 @@
+package com.jacky.table;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 表索引。用在成员变量上时为该字段的单列索引；用在 Table.indices() 中时为多列的组合索引。
+ * 索引在 DBManager.createTables 时创建，注解发生变更时会自动删除旧的索引并创建新的索引
+ * @author lixinquan
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Index {
+
+	/**
+	 * 索引名称。为空时自动生成：idx_表名_字段名
+	 * @return
+	 */
+	String name() default "";
+	/**
+	 * 组合索引的字段名称，用在成员变量上时忽略
+	 * @return
+	 */
+	String[] columns() default {};
+	/**
+	 * 是否为唯一索引
+	 * @return
+	 */
+	boolean unique() default false;
+}
@@ -0,0 +1,46 @@
+package com.jacky.table;
+
+import android.util.LruCache;
+
+/**
+ * 按主键缓存查询出来的数据对象，超过数量时淘汰最久没有使用的对象。
+ * 每次失效都会增加版本号，查询开始之后发生过失效的结果不会放入缓存，避免缓存旧数据
+ */
+final class ObjectCache {
+
+    private final LruCache<String, Object> mCache;
+    private long mGeneration;
+
+    ObjectCache(int maxSize) {
+        mCache = new LruCache<String, Object>(maxSize);
+    }
+
+    /**
+     * @return 当前的版本号，在查询数据库之前获取，放入缓存时传入
+     */
+    synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    synchronized Object get(String id) {
+        return id == null ? null : mCache.get(id);
+    }
+
+    /**
+     * @param generation 查询数据库之前的版本号，之后发生过失效时不放入缓存
+     */
+    synchronized void put(String id, Object value, long generation) {
+        if(id == null || value == null || generation != mGeneration) return;
+        mCache.put(id, value);
+    }
+
+    synchronized void remove(String id) {
+        mGeneration++;
+        if(id != null) mCache.remove(id);
+    }
+
+    synchronized void clear() {
+        mGeneration++;
+        mCache.evictAll();
+    }
+}
@@ -0,0 +1,36 @@
+package com.jacky.table;
+
+import java.util.List;
+
+/**
+ * 分页查询的结果，通过 getNextToken() 查询下一页
+ * @param <T>
+ */
+public final class Page<T> {
+
+    private final List<T> list;
+    private final String nextToken;
+
+    Page(List<T> list, String nextToken) {
+        this.list = list;
+        this.nextToken = nextToken;
+    }
+
+    /**
+     * @return 当前页的数据
+     */
+    public List<T> getList() {
+        return list;
+    }
+
+    /**
+     * @return 查询下一页时传入的标记，没有下一页时返回 null
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasMore() {
+        return nextToken != null;
+    }
+}
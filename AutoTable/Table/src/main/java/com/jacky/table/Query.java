@@ -0,0 +1,197 @@
+package com.jacky.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 按字段生成查询条件的构造器，字段名称在构造时按 Column 注解校验，参数按原生类型绑定。
+ * 多个条件之间为 AND 关系，需要 OR 等复杂条件时使用 where(String, Object...)。
+ * <pre>
+ * CompiledQuery&lt;Student&gt; query = Query.of(Student.class)
+ *         .eq("age", 18).in("sex", true, false).orderBy("id", true).limit(20)
+ *         .compile();
+ * List&lt;Student&gt; list = manager.query(query);
+ * list = manager.query(query, 20, true, false); //使用新的参数重复执行
+ * </pre>
+ * @param <T>
+ */
+public final class Query<T> {
+
+    private final Class<T> clazz;
+    private final TableInfo info;
+    private final StringBuilder where = new StringBuilder();
+    private final List<Object> args = new ArrayList<Object>();
+    /** 每个参数对应的字段，where(String, Object...) 的参数为 null */
+    private final List<ColumnInfo> argColumns = new ArrayList<ColumnInfo>();
+    private final StringBuilder orderBy = new StringBuilder();
+    private String[] columns;
+    private long limit = -1;
+    private long offset = -1;
+
+    private Query(Class<T> clazz) {
+        this.clazz = clazz;
+        this.info = TableInfo.of(clazz);
+        info.getTable();
+    }
+
+    /**
+     * @throws DatabaseException 该类没有 Table 注解
+     */
+    public static <T> Query<T> of(Class<T> clazz) {
+        return new Query<T>(clazz);
+    }
+
+    /**
+     * 只查询部分字段，未查询的成员保持默认值
+     */
+    public Query<T> select(String... columns) {
+        info.getSelection(columns);
+        this.columns = columns;
+        return this;
+    }
+
+    /**
+     * column = value，value 为 null 时为 column IS NULL，不占用参数位置
+     */
+    public Query<T> eq(String column, Object value) {
+        if(value == null) return isNull(column);
+        return condition(column, "=?", value);
+    }
+
+    /**
+     * column != value，value 为 null 时为 column IS NOT NULL，不占用参数位置
+     */
+    public Query<T> notEq(String column, Object value) {
+        if(value == null) return isNotNull(column);
+        return condition(column, "!=?", value);
+    }
+
+    public Query<T> gt(String column, Object value) {
+        return condition(column, ">?", value);
+    }
+
+    public Query<T> ge(String column, Object value) {
+        return condition(column, ">=?", value);
+    }
+
+    public Query<T> lt(String column, Object value) {
+        return condition(column, "<?", value);
+    }
+
+    public Query<T> le(String column, Object value) {
+        return condition(column, "<=?", value);
+    }
+
+    /**
+     * column BETWEEN from AND to，包含两端的值
+     */
+    public Query<T> between(String column, Object from, Object to) {
+        return condition(column, " BETWEEN ? AND ?", from, to);
+    }
+
+    public Query<T> like(String column, String pattern) {
+        return condition(column, " LIKE ?", pattern);
+    }
+
+    /**
+     * column IN (?,?...)，参数个数在编译后固定不变
+     * @throws IllegalArgumentException values 为空
+     */
+    public Query<T> in(String column, Collection<?> values) {
+        if(values == null || values.isEmpty()) {
+            throw new IllegalArgumentException("values is empty.");
+        }
+        StringBuilder sb = new StringBuilder(" IN (");
+        for(int i = 0; i < values.size(); i++) {
+            sb.append(i > 0 ? ",?" : "?");
+        }
+        return condition(column, sb.append(')').toString(), values.toArray());
+    }
+
+    public Query<T> in(String column, Object... values) {
+        return in(column, values == null ? null : Arrays.asList(values));
+    }
+
+    public Query<T> isNull(String column) {
+        return condition(column, " IS NULL");
+    }
+
+    public Query<T> isNotNull(String column) {
+        return condition(column, " IS NOT NULL");
+    }
+
+    /**
+     * 追加原始的条件语句，字段名称不做校验
+     * @param clause 如 "age<? OR age>?"
+     * @param args 与 clause 中的 ? 一一对应
+     */
+    public Query<T> where(String clause, Object... args) {
+        appendWhere('(' + clause + ')');
+        if(args != null) {
+            for(Object arg : args) {
+                this.args.add(arg);
+                argColumns.add(null);
+            }
+        }
+        return this;
+    }
+
+    public Query<T> orderBy(String column, boolean asc) {
+        checkColumn(column);
+        if(orderBy.length() > 0) orderBy.append(',');
+        orderBy.append(column).append(asc ? " ASC" : " DESC");
+        return this;
+    }
+
+    public Query<T> limit(long limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    public Query<T> offset(long offset) {
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * 生成可以重复使用的查询，之后对构造器的修改不会影响已生成的查询
+     */
+    public CompiledQuery<T> compile() {
+        StringBuilder suffix = new StringBuilder();
+        if(orderBy.length() > 0) {
+            suffix.append(" ORDER BY ").append(orderBy);
+        }
+        if(limit >= 0 || offset >= 0) {
+            suffix.append(" LIMIT ").append(limit);
+            if(offset >= 0) suffix.append(" OFFSET ").append(offset);
+        }
+        return new CompiledQuery<T>(clazz, info, info.getSelection(columns), where.toString(),
+                suffix.toString(), limit >= 0 || offset >= 0, args.toArray(),
+                argColumns.toArray(new ColumnInfo[argColumns.size()]));
+    }
+
+    private Query<T> condition(String column, String operator, Object... values) {
+        checkColumn(column);
+        appendWhere(column + operator);
+        //与保存时一致，经过字段的转换器，如按序号保存的枚举
+        ColumnInfo info = this.info.getColumn(column);
+        for(Object value : values) {
+            args.add(info.toDatabase(value));
+            argColumns.add(info);
+        }
+        return this;
+    }
+
+    private void appendWhere(String clause) {
+        if(where.length() > 0) where.append(" AND ");
+        where.append(clause);
+    }
+
+    private void checkColumn(String column) {
+        if(info.getColumn(column) == null) {
+            throw new DatabaseException("No column " + column + " in the Table " + info.getName());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.jacky.table;
+
+import android.database.Cursor;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 流式的查询结果，遍历到某一行时才将该行映射为数据对象，不会一次性加载全部数据。
+ * 遍历结束或者调用 close() 时关闭 Cursor，只能遍历一次
+ * <pre>
+ * QueryResult&lt;Student&gt; result = manager.iterate(Student.class);
+ * try {
+ *     for(Student s : result) { ... }
+ * } finally {
+ *     result.close();
+ * }
+ * </pre>
+ * @param <T>
+ */
+public final class QueryResult<T> implements Iterable<T>, Iterator<T>, Closeable {
+
+    private final Class<T> clazz;
+    private final TableInfo info;
+    private final Cursor cursor;
+    /** 重复使用的对象，为 null 时每一行都创建新的对象 */
+    private T reused;
+    private final boolean reuseObject;
+    /** 每个字段在 cursor 中的位置，第一次读取数据时获取 */
+    private int[] indexes;
+    /** 是否已经移动到了下一行 */
+    private boolean moved;
+    private boolean hasNext;
+
+    /**
+     * @param clazz
+     * @param cursor 可以为 null，表示没有数据
+     * @param reuseObject 是否所有行都复用同一个对象。复用时调用方不能持有 next() 返回的对象，
+     *                    对应字段为空的成员设置为 null（基本类型为 0、false）
+     */
+    public QueryResult(Class<T> clazz, Cursor cursor, boolean reuseObject) {
+        this.clazz = clazz;
+        this.info = TableInfo.of(clazz);
+        this.cursor = cursor;
+        this.reuseObject = reuseObject;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if(!moved) {
+            hasNext = cursor != null && !cursor.isClosed() && cursor.moveToNext();
+            moved = true;
+            if(!hasNext) {
+                close();
+            }
+        }
+        return hasNext;
+    }
+
+    /**
+     * @return 当前行对应的数据对象，对象创建失败时返回 null
+     */
+    @Override
+    public T next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        moved = false;
+        if(indexes == null) {
+            indexes = info.getColumnIndexes(cursor);
+        }
+
+        if(!reuseObject) {
+            return clazz.cast(info.buildObject(cursor, indexes));
+        }
+        if(reused == null) {
+            reused = clazz.cast(info.newObject());
+            if(reused == null) return null;
+        }
+        info.readObject(reused, cursor, indexes, true);
+        return reused;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return 查询结果的总行数
+     */
+    public int getCount() {
+        return cursor == null || cursor.isClosed() ? 0 : cursor.getCount();
+    }
+
+    @Override
+    public void close() {
+        if(cursor != null && !cursor.isClosed()) {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.jacky.table;
+
+/**
+ * 数据对象与表字段之间的映射器，由 TableCompiler 注解处理器在编译期生成，
+ * 通过直接访问成员来代替反射。没有生成映射器的类依然使用反射的方式处理
+ * @param <T>
+ */
+public interface RowMapper<T> extends Unproguard {
+
+    /**
+     * 生成类的名称后缀，生成类的名称为 数据类名称 + SUFFIX
+     */
+    String SUFFIX = "_RowMapper";
+
+    /**
+     * @return 可以处理的表字段名称，下标即为 getValue、setValue 中的 column 参数
+     */
+    String[] columns();
+
+    /**
+     * 创建一个新的数据对象
+     */
+    T newObject();
+
+    /**
+     * 获取成员的值
+     * @param t
+     * @param column 字段在 columns() 中的下标
+     */
+    Object getValue(T t, int column);
+
+    /**
+     * 设置成员的值
+     * @param t
+     * @param column 字段在 columns() 中的下标
+     * @param value
+     */
+    void setValue(T t, int column, Object value);
+}
@@ -0,0 +1,128 @@
+package com.jacky.table;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.jacky.log.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 检查语句的执行时间，超过阈值时获取 EXPLAIN QUERY PLAN 并报告给监听，只标记大表的全表扫描。
+ * 同样形式的语句在间隔时间内只报告一次，避免频繁执行的慢查询反复 EXPLAIN
+ */
+final class SlowQueryDetector {
+
+    /** 默认只标记估算行数达到该值的表的全表扫描 */
+    static final long DEFAULT_MIN_SCAN_ROWS = 1000;
+    /** 最多记录的语句形式个数，超过时清空重新记录 */
+    private static final int MAX_SHAPES = 256;
+    /** 字符串和数字常量 */
+    private static final Pattern LITERAL = Pattern.compile("'(?:[^']|'')*'|\\b\\d+(?:\\.\\d+)?\\b");
+
+    private final SlowQueryListener listener;
+    private final long thresholdNanos;
+    private final long intervalNanos;
+    private final long minScanRows;
+    /** 语句形式 -> 上次报告的 System.nanoTime() */
+    private final ConcurrentHashMap<String, Long> mLastReports = new ConcurrentHashMap<String, Long>();
+
+    SlowQueryDetector(SlowQueryListener listener, long thresholdMillis, long intervalMillis, long minScanRows) {
+        this.listener = listener;
+        this.thresholdNanos = thresholdMillis * 1000000;
+        this.intervalNanos = intervalMillis * 1000000;
+        this.minScanRows = minScanRows;
+    }
+
+    /**
+     * 语句执行完后调用，超过阈值且不在间隔时间内时报告
+     * @param start 语句开始执行时的 System.nanoTime()
+     */
+    void check(SQLiteDatabase db, String sql, String[] args, long start) {
+        long now = System.nanoTime();
+        long duration = now - start;
+        if(duration < thresholdNanos) return;
+
+        String shape = getShape(sql);
+        Long last = mLastReports.get(shape);
+        if(last != null && now - last < intervalNanos) return;
+        if(mLastReports.size() >= MAX_SHAPES) mLastReports.clear();
+        mLastReports.put(shape, now);
+
+        List<String> plan = explain(db, sql, args);
+        List<String> tables = new ArrayList<String>();
+        for(String detail : plan) {
+            String table = getFullScanTable(detail);
+            if(table != null && !tables.contains(table)
+                    && (minScanRows <= 0 || estimateRows(db, table) >= minScanRows)) {
+                tables.add(table);
+            }
+        }
+        try {
+            listener.onSlowQuery(new SlowQueryReport(sql, shape, duration,
+                    Collections.unmodifiableList(plan), Collections.unmodifiableList(tables)));
+        } catch (RuntimeException e) {
+            Logger.e(e);
+        }
+    }
+
+    private static List<String> explain(SQLiteDatabase db, String sql, String[] args) {
+        List<String> plan = new ArrayList<String>();
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+            //旧版本的列为 selectid、order、from、detail，新版本为 id、parent、notused、detail
+            int index = cursor.getColumnIndex("detail");
+            if(index < 0) index = cursor.getColumnCount() - 1;
+            while(cursor.moveToNext()) {
+                plan.add(cursor.getString(index));
+            }
+        } catch (Exception e) {
+            Logger.e(e);
+        } finally {
+            if(cursor != null) cursor.close();
+        }
+        return plan;
+    }
+
+    /**
+     * 通过 MAX(rowid) 估算表的行数，只需要查找 rowid 索引的最后一项，不需要扫描整张表。
+     * 删除过数据时会偏大；没有 rowid 的表、别名等无法查询时视为大表
+     */
+    private static long estimateRows(SQLiteDatabase db, String table) {
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery("SELECT MAX(rowid) FROM " + table, null);
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } catch (Exception e) {
+            return Long.MAX_VALUE;
+        } finally {
+            if(cursor != null) cursor.close();
+        }
+    }
+
+    /**
+     * @return 语句的形式，字符串和数字常量替换为 ?，只有常量不同的语句视为同一种
+     */
+    static String getShape(String sql) {
+        return LITERAL.matcher(sql).replaceAll("?");
+    }
+
+    /**
+     * 解析 "SCAN TABLE t"（3.36.0 之后为 "SCAN t"）形式的全表扫描，使用索引的扫描不算
+     * @return 全表扫描的表名，不是全表扫描时返回 null
+     */
+    static String getFullScanTable(String detail) {
+        if(detail == null || !detail.startsWith("SCAN ") || detail.contains(" USING ")) return null;
+        String rest = detail.substring(5);
+        if(rest.startsWith("TABLE ")) rest = rest.substring(6);
+        int end = rest.indexOf(' ');
+        String table = end < 0 ? rest : rest.substring(0, end);
+        if(table.equals("SUBQUERY") || table.equals("CONSTANT")) return null;
+        return table;
+    }
+}
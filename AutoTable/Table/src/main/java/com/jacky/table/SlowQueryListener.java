@@ -0,0 +1,10 @@
+package com.jacky.table;
+
+/**
+ * 慢查询的监听，在执行查询的线程中同步调用
+ * @see DBManager#setSlowQueryListener(SlowQueryListener, long, long)
+ */
+public interface SlowQueryListener {
+
+    void onSlowQuery(SlowQueryReport report);
+}
@@ -0,0 +1,65 @@
+package com.jacky.table;
+
+import java.util.List;
+
+/**
+ * 一次慢查询的信息，包括 EXPLAIN QUERY PLAN 的结果以及其中全表扫描的表
+ */
+public final class SlowQueryReport {
+
+    private final String sql;
+    private final String shape;
+    private final long durationNanos;
+    private final List<String> plan;
+    private final List<String> fullScanTables;
+
+    SlowQueryReport(String sql, String shape, long durationNanos, List<String> plan, List<String> fullScanTables) {
+        this.sql = sql;
+        this.shape = shape;
+        this.durationNanos = durationNanos;
+        this.plan = plan;
+        this.fullScanTables = fullScanTables;
+    }
+
+    /**
+     * @return 执行的 SQL 语句，不包括参数
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return 把语句中的字符串、数字常量替换为 ? 之后的语句，同样的语句只在间隔时间内报告一次
+     */
+    public String getShape() {
+        return shape;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return EXPLAIN QUERY PLAN 每一行的 detail，获取失败时为空
+     */
+    public List<String> getPlan() {
+        return plan;
+    }
+
+    /**
+     * @return 没有使用索引、需要全表扫描，并且估算行数达到 minScanRows 的表。
+     *         小表的全表扫描只出现在 getPlan() 中
+     */
+    public List<String> getFullScanTables() {
+        return fullScanTables;
+    }
+
+    public boolean hasFullScan() {
+        return !fullScanTables.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "SlowQuery{" + durationNanos / 1000000 + "ms, " + sql + ", plan=" + plan + '}';
+    }
+}
@@ -0,0 +1,122 @@
+package com.jacky.table;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 按 SQL 语句缓存预编译的 SQLiteStatement，超过数量时关闭最久没有使用的语句。
+ * 语句的参数保存在对象上，每个线程使用自己的一组语句，绑定参数和执行时不需要加锁。
+ * 编译、执行语句都需要获取数据库连接，因此不能在持有任何 Java 锁的时候进行：
+ * 非并发模式只有一个连接，持有锁等待连接的线程会与事务中等待该锁的线程互相等待。
+ * acquire 得到的语句会增加引用计数，使用完后必须调用 release，
+ * 因此 close 关闭的语句在使用它的线程用完之前不会真正释放
+ */
+final class StatementCache {
+
+    private final SQLiteDatabase mDatabase;
+    private final int mMaxSize;
+    /** 线程 -> 该线程的语句，线程结束后随之回收 */
+    private final Map<Thread, LruCache<String, SQLiteStatement>> mCaches =
+            new WeakHashMap<Thread, LruCache<String, SQLiteStatement>>();
+    private boolean isClosed;
+
+    StatementCache(SQLiteDatabase db, int maxSize) {
+        mDatabase = db;
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * 获取 sql 对应的语句，当前线程没有缓存时编译并放入缓存
+     * @throws android.database.SQLException 语句编译失败
+     */
+    SQLiteStatement acquire(String sql) {
+        LruCache<String, SQLiteStatement> cache = getCache();
+        if(cache == null) {
+            //已关闭，编译一条不缓存的语句，release 时释放
+            return mDatabase.compileStatement(sql);
+        }
+        //LruCache 在锁外调用 create 编译语句
+        SQLiteStatement statement = cache.get(sql);
+        statement.acquireReference();
+        return statement;
+    }
+
+    void release(SQLiteStatement statement) {
+        statement.releaseReference();
+    }
+
+    /**
+     * @return 当前线程的缓存，已关闭时返回 null
+     */
+    private LruCache<String, SQLiteStatement> getCache() {
+        Thread thread = Thread.currentThread();
+        synchronized (mCaches) {
+            if(isClosed) return null;
+            LruCache<String, SQLiteStatement> cache = mCaches.get(thread);
+            if(cache == null) {
+                cache = new LruCache<String, SQLiteStatement>(mMaxSize) {
+                    @Override
+                    protected SQLiteStatement create(String sql) {
+                        return mDatabase.compileStatement(sql);
+                    }
+
+                    @Override
+                    protected void entryRemoved(boolean evicted, String sql, SQLiteStatement oldValue, SQLiteStatement newValue) {
+                        oldValue.close();
+                    }
+                };
+                mCaches.put(thread, cache);
+            }
+            return cache;
+        }
+    }
+
+    private List<LruCache<String, SQLiteStatement>> getCaches() {
+        synchronized (mCaches) {
+            return new ArrayList<LruCache<String, SQLiteStatement>>(mCaches.values());
+        }
+    }
+
+    /**
+     * @return 从缓存中取到语句的次数
+     */
+    int hitCount() {
+        int count = 0;
+        for(LruCache<String, SQLiteStatement> cache : getCaches()) {
+            count += cache.hitCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return 需要重新编译语句的次数
+     */
+    int missCount() {
+        int count = 0;
+        for(LruCache<String, SQLiteStatement> cache : getCaches()) {
+            count += cache.missCount();
+        }
+        return count;
+    }
+
+    /**
+     * 关闭所有缓存的语句，关闭语句不需要数据库连接
+     */
+    void close() {
+        List<LruCache<String, SQLiteStatement>> caches;
+        synchronized (mCaches) {
+            isClosed = true;
+            caches = new ArrayList<LruCache<String, SQLiteStatement>>(mCaches.values());
+            mCaches.clear();
+        }
+        for(LruCache<String, SQLiteStatement> cache : caches) {
+            cache.evictAll();
+        }
+    }
+}
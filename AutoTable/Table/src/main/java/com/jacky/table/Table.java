@@ -23,4 +23,9 @@ public @interface Table {
 	 * @return
 	 */
 	boolean autoId() default false;
+	/**
+	 * 多个字段的组合索引，单个字段的索引可以直接在成员变量上使用 Index、Unique 注解
+	 * @return
+	 */
+	Index[] indices() default {};
 }
@@ -0,0 +1,434 @@
+package com.jacky.table;
+
+import android.database.Cursor;
+
+import com.jacky.log.Logger;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 数据类与表结构之间的映射信息。
+ * 每个类只解析一次注解，之后所有的 DBManager 实例共享同一份数据
+ */
+final class TableInfo {
+
+    private static final ConcurrentHashMap<Class<?>, TableInfo> sTableInfos =
+            new ConcurrentHashMap<Class<?>, TableInfo>();
+
+    /**
+     * 获取类的映射信息，线程安全
+     * @param clazz
+     * @return
+     */
+    static TableInfo of(Class<?> clazz) {
+        TableInfo info = sTableInfos.get(clazz);
+        if(info == null) {
+            info = new TableInfo(clazz);
+            TableInfo old = sTableInfos.putIfAbsent(clazz, info);
+            if(old != null) {
+                info = old;
+            }
+        }
+        return info;
+    }
+
+    /** getSql 的语句类型：按主键查询全部字段 */
+    static final int SQL_QUERY_BY_ID = 0;
+    /** getSql 的语句类型：所有字段都相等时删除 */
+    static final int SQL_DELETE_BY_COLUMNS = 1;
+    /** getSql 的语句类型：总记录数 */
+    static final int SQL_COUNT = 2;
+    /** getSql 的语句类型：是否有记录，返回 1 或 0 */
+    static final int SQL_EXISTS = 3;
+
+    final Class<?> clazz;
+    /** 类上的 Table 注解，没有时为 null */
+    private final Table table;
+    /** 按成员定义顺序排列的字段信息 */
+    final ColumnInfo[] columns;
+    /** 主键字段，没有时为 null */
+    final ColumnInfo primary;
+    private final Constructor<?> constructor;
+    /** 编译期生成的映射器，没有时为 null */
+    private final RowMapper<Object> mapper;
+    private volatile ColumnInfo[] insertColumns;
+    private volatile Map<String, String> indexes;
+    /** 按语句类型缓存的 SQL，字符串不可变，并发时重复生成也没有影响 */
+    private final String[] sqls = new String[SQL_EXISTS + 1];
+
+    private TableInfo(Class<?> clazz) {
+        this.clazz = clazz;
+        this.table = clazz.getAnnotation(Table.class);
+
+        List<ColumnInfo> list = new ArrayList<ColumnInfo>();
+        ColumnInfo primary = null;
+        for(Field field : clazz.getDeclaredFields()) {
+            Column column = field.getAnnotation(Column.class);
+            if(column == null) continue;
+
+            ColumnInfo info = new ColumnInfo(clazz, field, column);
+            if(primary == null && info.isPrimary) {
+                primary = info;
+            }
+            list.add(info);
+        }
+        this.columns = list.toArray(new ColumnInfo[list.size()]);
+        this.primary = primary;
+
+        Constructor<?> constructor = null;
+        try {
+            constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (Exception e) {
+            Logger.e(e);
+        }
+        this.constructor = constructor;
+        this.mapper = bindMapper(clazz, columns);
+    }
+
+    /**
+     * 加载 TableCompiler 生成的映射器，并关联到每个字段上
+     * @return 没有生成映射器或者映射器与当前类的字段不一致时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    private static RowMapper<Object> bindMapper(Class<?> clazz, ColumnInfo[] columns) {
+        RowMapper<Object> mapper;
+        try {
+            Class<?> c = Class.forName(clazz.getName() + RowMapper.SUFFIX, true, clazz.getClassLoader());
+            mapper = (RowMapper<Object>) c.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (Exception e) {
+            Logger.e(e);
+            return null;
+        }
+
+        String[] names = mapper.columns();
+        int[] indexes = new int[columns.length];
+        for(int i = 0; i < columns.length; i++) {
+            indexes[i] = -1;
+            for(int j = 0; j < names.length; j++) {
+                if(columns[i].name.equals(names[j])) {
+                    indexes[i] = j;
+                    break;
+                }
+            }
+            if(indexes[i] == -1) {
+                Logger.w(clazz, "RowMapper not match column " + columns[i].name);
+                return null;
+            }
+        }
+        for(int i = 0; i < columns.length; i++) {
+            columns[i].setMapper(mapper, indexes[i]);
+        }
+        return mapper;
+    }
+
+    /**
+     * @throws DatabaseException 该类没有 Table 注解
+     */
+    Table getTable() {
+        if(table == null) {
+            throw new DatabaseException("Class " + clazz + " not have Table Annotation!");
+        }
+        return table;
+    }
+
+    String getName() {
+        return getTable().value();
+    }
+
+    /**
+     *
+     * @param throwError 没有找到主键信息，是否要抛出异常
+     * @return
+     */
+    ColumnInfo getPrimary(boolean throwError) {
+        if(primary == null && throwError) {
+            throw new DatabaseException("This table no primary key.");
+        }
+        return primary;
+    }
+
+    /**
+     * @param name 表字段名称
+     * @return 没有该字段时返回 null
+     */
+    ColumnInfo getColumn(String name) {
+        for(ColumnInfo column : columns) {
+            if(column.name.equals(name)) return column;
+        }
+        return null;
+    }
+
+    boolean hasColumn(String name) {
+        return getColumn(name) != null;
+    }
+
+    /**
+     * @return 索引名称 -> 建索引语句。语句不含 IF NOT EXISTS，与 sqlite_master 中保存的语句一致
+     * @throws DatabaseException 组合索引中的字段不存在
+     */
+    Map<String, String> getIndexes() {
+        Map<String, String> result = indexes;
+        if(result == null) {
+            String table = getName();
+            result = new LinkedHashMap<String, String>();
+            for(ColumnInfo column : columns) {
+                Index index = column.field.getAnnotation(Index.class);
+                if(index != null) {
+                    putIndex(result, table, index.name(), index.unique(), column.name);
+                }
+                Unique unique = column.field.getAnnotation(Unique.class);
+                if(unique != null) {
+                    putIndex(result, table, unique.name(), true, column.name);
+                }
+            }
+            for(Index index : getTable().indices()) {
+                if(index.columns().length == 0) {
+                    throw new DatabaseException("Index in the Table " + table + " has no columns.");
+                }
+                for(String name : index.columns()) {
+                    if(getColumn(name) == null) {
+                        throw new DatabaseException("No column " + name + " in the Table " + table);
+                    }
+                }
+                putIndex(result, table, index.name(), index.unique(), index.columns());
+            }
+            result = Collections.unmodifiableMap(result);
+            indexes = result;
+        }
+        return result;
+    }
+
+    private static void putIndex(Map<String, String> map, String table, String name, boolean unique, String... columns) {
+        StringBuilder cols = new StringBuilder();
+        for(String column : columns) {
+            if(cols.length() > 0) cols.append(',');
+            cols.append(column);
+        }
+        if(name.length() == 0) {
+            name = "idx_" + table + '_' + cols.toString().replace(',', '_');
+        }
+        map.put(name, (unique ? "CREATE UNIQUE INDEX " : "CREATE INDEX ") + name + " ON " + table + "(" + cols + ")");
+    }
+
+    /**
+     * @return 索引的版本号，格式为：全部建索引语句的 hash:索引名称1,索引名称2...
+     */
+    String getIndexVersion() {
+        StringBuilder sql = new StringBuilder();
+        StringBuilder names = new StringBuilder();
+        for(Map.Entry<String, String> entry : getIndexes().entrySet()) {
+            sql.append(entry.getValue()).append(';');
+            if(names.length() > 0) names.append(',');
+            names.append(entry.getKey());
+        }
+        return sql.toString().hashCode() + ":" + names;
+    }
+
+    /**
+     * @return 插入数据时需要写入的字段，自增的主键不在其中
+     */
+    ColumnInfo[] getInsertColumns() {
+        ColumnInfo[] result = insertColumns;
+        if(result == null) {
+            boolean autoId = getTable().autoId();
+            List<ColumnInfo> list = new ArrayList<ColumnInfo>(columns.length);
+            for(ColumnInfo column : columns) {
+                if(autoId && column.isPrimary) continue;
+                list.add(column);
+            }
+            result = list.toArray(new ColumnInfo[list.size()]);
+            insertColumns = result;
+        }
+        return result;
+    }
+
+    /**
+     * 生成插入语句，多行时为 INSERT INTO t(a,b) VALUES (?,?),(?,?)...，参数按行依次排列
+     * @param columns 需要写入的字段
+     * @param rows 一条语句插入的行数，没有字段时只能为 1
+     */
+    String getInsertSql(ColumnInfo[] columns, int rows) {
+        StringBuilder sb = new StringBuilder("INSERT INTO ").append(getName());
+        if(columns.length == 0) {
+            return sb.append(" DEFAULT VALUES").toString();
+        }
+        sb.append('(');
+        for(int i = 0; i < columns.length; i++) {
+            if(i > 0) sb.append(',');
+            sb.append(columns[i].name);
+        }
+        sb.append(") VALUES ");
+        for(int r = 0; r < rows; r++) {
+            sb.append(r > 0 ? ",(" : "(");
+            for(int i = 0; i < columns.length; i++) {
+                sb.append(i > 0 ? ",?" : "?");
+            }
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 生成追加在插入语句后面的 ON CONFLICT(主键) DO UPDATE 子句，需要 SQLite 3.24.0 以上版本
+     * @param columns 需要写入的字段，必须包含主键
+     */
+    String getUpsertClause(ColumnInfo[] columns) {
+        ColumnInfo primary = getPrimary(true);
+        StringBuilder sb = new StringBuilder();
+        sb.append(" ON CONFLICT(").append(primary.name).append(") DO ");
+
+        boolean hasSet = false;
+        for(ColumnInfo column : columns) {
+            if(column.isPrimary) continue;
+            sb.append(hasSet ? "," : "UPDATE SET ")
+                    .append(column.name).append("=excluded.").append(column.name);
+            hasSet = true;
+        }
+        if(!hasSet) {
+            sb.append("NOTHING");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param type SQL_QUERY_BY_ID 等语句类型
+     * @return 该表固定不变的语句，同一条语句可以复用预编译的结果
+     */
+    String getSql(int type) {
+        String sql = sqls[type];
+        if(sql == null) {
+            sql = buildSql(type);
+            sqls[type] = sql;
+        }
+        return sql;
+    }
+
+    private String buildSql(int type) {
+        String table = getName();
+        switch (type) {
+            case SQL_QUERY_BY_ID:
+                //limit 1 表示只查询一条结果，只为提高性能
+                return "SELECT * FROM " + table + " WHERE " + getPrimary(true).name + "=? limit 1";
+            case SQL_DELETE_BY_COLUMNS:
+                StringBuilder sb = new StringBuilder("DELETE FROM ").append(table).append(" WHERE ");
+                //IS 与 = 相同，但 NULL 值也可以匹配
+                for(ColumnInfo column : columns) {
+                    sb.append(column.name).append(" IS ? and ");
+                }
+                return sb.append("1=1").toString();//以免多出一个 and 关键字
+            case SQL_COUNT:
+                return "SELECT COUNT(1) FROM " + table;
+            case SQL_EXISTS:
+                return "SELECT EXISTS(SELECT 1 FROM " + table + ")";
+            default:
+                throw new IllegalArgumentException("Unknown sql type " + type);
+        }
+    }
+
+    /**
+     * @param count 主键值的个数
+     * @return 主键 IN (?,?...) 条件
+     * @throws DatabaseException 该表没有主键
+     */
+    String getPrimaryInClause(int count) {
+        StringBuilder sb = new StringBuilder(getPrimary(true).name).append(" IN (");
+        for(int i = 0; i < count; i++) {
+            sb.append(i > 0 ? ",?" : "?");
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * 创建一个新的数据对象，失败时返回 null
+     */
+    Object newObject() {
+        if(mapper != null) return mapper.newObject();
+        if(constructor == null) return null;
+        try {
+            return constructor.newInstance();
+        } catch (Exception e) {
+            Logger.e(e);
+            return null;
+        }
+    }
+
+    /**
+     * 将 cursor 的当前行映射为数据对象
+     */
+    Object buildObject(Cursor cursor) {
+        return buildObject(cursor, getColumnIndexes(cursor));
+    }
+
+    /**
+     * 将 cursor 的当前行映射为数据对象
+     * @param indexes getColumnIndexes(cursor) 的结果，同一个 cursor 只需要获取一次
+     */
+    Object buildObject(Cursor cursor, int[] indexes) {
+        Object t = newObject();
+        if(t == null) return null;
+        readObject(t, cursor, indexes, false);
+        return t;
+    }
+
+    /**
+     * 将 cursor 的当前行数据设置到已有的对象中
+     * @param indexes getColumnIndexes(cursor) 的结果
+     * @param clearNull 字段为空时是否清空成员，对象被复用时需要清空上一行的值
+     */
+    void readObject(Object t, Cursor cursor, int[] indexes, boolean clearNull) {
+        for(int i = 0; i < columns.length; i++) {
+            if(indexes[i] == -1) continue;
+            columns[i].read(t, cursor, indexes[i], clearNull);
+        }
+    }
+
+    /**
+     * @return 每个字段在 cursor 中的位置，与 columns 一一对应，cursor 中没有的字段为 -1
+     */
+    int[] getColumnIndexes(Cursor cursor) {
+        int[] indexes = new int[columns.length];
+        for(int i = 0; i < columns.length; i++) {
+            indexes[i] = cursor.getColumnIndex(columns[i].name);
+        }
+        return indexes;
+    }
+
+    /**
+     * @param names 需要查询的字段，为空时查询全部字段
+     * @return SELECT 语句中的字段列表
+     * @throws DatabaseException 表中没有该字段
+     */
+    String getSelection(String[] names) {
+        if(names == null || names.length == 0) return "*";
+        StringBuilder sb = new StringBuilder();
+        for(String name : names) {
+            if(getColumn(name) == null) {
+                throw new DatabaseException("No column " + name + " in the Table " + getName());
+            }
+            if(sb.length() > 0) sb.append(',');
+            sb.append(name);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return 全部字段的名称
+     */
+    String[] getColumnNames() {
+        String[] names = new String[columns.length];
+        for(int i = 0; i < columns.length; i++) {
+            names[i] = columns[i].name;
+        }
+        return names;
+    }
+}
@@ -0,0 +1,27 @@
+package com.jacky.table;
+
+/**
+ * 成员类型与数据库类型之间的转换器，用于支持 Date、UUID 等框架不能直接映射的类型。
+ * 通过 TypeConverters.register 按成员类型注册，或者通过 Column.converter 指定到某个字段上。
+ * 转换器在类第一次使用时解析，每个字段只解析一次
+ * @param <F> 成员的类型
+ * @param <D> 保存到数据库中的类型，必须与 getDBType() 对应：
+ *           TEXT、CHAR 为 String，INT 为 Integer，LONG 为 Long，DOUBLE 为 Double，FLOAT 为 Float，BOOLEAN 为 Boolean，BLOB 为 byte[]
+ */
+public interface TypeConverter<F, D> extends Unproguard {
+
+    /**
+     * @return 保存到数据库中的字段类型
+     */
+    DBType getDBType();
+
+    /**
+     * 转换成保存到数据库中的值，value 不会为 null
+     */
+    D toDatabase(F value);
+
+    /**
+     * 转换成成员的值，value 不会为 null
+     */
+    F fromDatabase(D value);
+}
@@ -0,0 +1,103 @@
+package com.jacky.table;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TypeConverter 的注册表。内置 Date（毫秒数）、UUID（字符串）、BigDecimal（字符串，不损失精度）的转换器。
+ * 需要在第一次使用对应的类之前注册，之后注册的转换器对已经解析过的类无效
+ */
+public final class TypeConverters {
+
+    private static final ConcurrentHashMap<Class<?>, TypeConverter<?, ?>> sConverters =
+            new ConcurrentHashMap<Class<?>, TypeConverter<?, ?>>();
+
+    static {
+        register(Date.class, new TypeConverter<Date, Long>() {
+            @Override
+            public DBType getDBType() {
+                return DBType.LONG;
+            }
+
+            @Override
+            public Long toDatabase(Date value) {
+                return value.getTime();
+            }
+
+            @Override
+            public Date fromDatabase(Long value) {
+                return new Date(value);
+            }
+        });
+        register(UUID.class, new TypeConverter<UUID, String>() {
+            @Override
+            public DBType getDBType() {
+                return DBType.TEXT;
+            }
+
+            @Override
+            public String toDatabase(UUID value) {
+                return value.toString();
+            }
+
+            @Override
+            public UUID fromDatabase(String value) {
+                return UUID.fromString(value);
+            }
+        });
+        register(BigDecimal.class, new TypeConverter<BigDecimal, String>() {
+            @Override
+            public DBType getDBType() {
+                return DBType.TEXT;
+            }
+
+            @Override
+            public String toDatabase(BigDecimal value) {
+                return value.toPlainString();
+            }
+
+            @Override
+            public BigDecimal fromDatabase(String value) {
+                return new BigDecimal(value);
+            }
+        });
+    }
+
+    private TypeConverters() {}
+
+    /**
+     * 注册 type 类型成员的转换器，会覆盖之前注册的转换器
+     */
+    public static <F> void register(Class<F> type, TypeConverter<F, ?> converter) {
+        if(type == null || converter == null) {
+            throw new NullPointerException("type or converter is null.");
+        }
+        sConverters.put(type, converter);
+    }
+
+    /**
+     * @return type 类型的转换器，没有时返回 null
+     */
+    static TypeConverter<?, ?> get(Class<?> type) {
+        return sConverters.get(type);
+    }
+
+    /**
+     * @return 字段指定的转换器，没有指定时按成员类型查找，都没有时返回 null
+     * @throws DatabaseException 指定的转换器无法创建
+     */
+    @SuppressWarnings("unchecked")
+    static TypeConverter<Object, Object> resolve(Column column, Class<?> fieldType) {
+        Class<?> c = column.converter();
+        if(c != TypeConverter.class) {
+            try {
+                return (TypeConverter<Object, Object>) c.getDeclaredConstructor().newInstance();
+            } catch (Exception e) {
+                throw new DatabaseException("Can not create converter " + c.getName());
+            }
+        }
+        return (TypeConverter<Object, Object>) get(fieldType);
+    }
+}
@@ -0,0 +1,23 @@
+package com.jacky.table;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 字段的值在表中唯一，等同于 {@code @Index(unique = true)}。
+ * 通过唯一索引实现，已有的表也可以直接添加，不需要重建表
+ * @author lixinquan
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Unique {
+
+	/**
+	 * 索引名称。为空时自动生成：idx_表名_字段名
+	 * @return
+	 */
+	String name() default "";
+}
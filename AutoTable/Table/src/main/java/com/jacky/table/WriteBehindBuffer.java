@@ -0,0 +1,222 @@
+package com.jacky.table;
+
+import com.jacky.log.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 延迟写入的缓冲区。insert、replaceInto、update、delete 只是记录下来，
+ * 积累到 maxRows 条或者第一条记录之后经过 maxDelayMillis 毫秒，在同一个事务中按记录的顺序写入数据库。
+ * 适用于大量、频繁的小量写入，如日志、统计数据。
+ * 缓冲区中的数据在写入之前查询不到，进程被杀死时会丢失。
+ * <p>
+ * 缓冲区只保存数据对象的引用，不复制对象：记录之后、写入之前对对象的修改也会被写入，
+ * 写入的是 flush 时对象的值。需要记录当时的值时，传入对象的副本。
+ * <p>
+ * 定时写入失败时，这些记录被丢弃，异常在下一次调用 flush() 或 close() 时抛出
+ */
+public final class WriteBehindBuffer {
+
+    private static final int INSERT = 0;
+    private static final int REPLACE = 1;
+    private static final int UPDATE = 2;
+    private static final int DELETE = 3;
+
+    private final DBManager mManager;
+    private final int mMaxRows;
+    private final long mMaxDelayMillis;
+    private final ScheduledExecutorService mScheduler;
+    /** 按调用顺序记录的写操作 */
+    private List<Op> mPending = new ArrayList<Op>();
+    private ScheduledFuture<?> mScheduled;
+    private final Object mFlushLock = new Object();
+    private boolean isClosed;
+    /** 定时写入失败的异常，下一次 flush 时抛出 */
+    private RuntimeException mFailure;
+
+    /**
+     * @param manager
+     * @param maxRows 缓存的最多记录数，达到后立即写入
+     * @param maxDelayMillis 第一条记录最多缓存的时间
+     */
+    public WriteBehindBuffer(DBManager manager, int maxRows, long maxDelayMillis) {
+        if(manager == null) {
+            throw new NullPointerException("manager is null.");
+        }
+        mManager = manager;
+        mMaxRows = Math.max(1, maxRows);
+        mMaxDelayMillis = Math.max(0, maxDelayMillis);
+        mScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "AutoTable-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        manager.register(this);
+    }
+
+    @SafeVarargs
+    public final <T> void insert(T... list) {
+        add(INSERT, list);
+    }
+
+    @SafeVarargs
+    public final <T> void replaceInto(T... list) {
+        add(REPLACE, list);
+    }
+
+    @SafeVarargs
+    public final <T> void update(T... list) {
+        add(UPDATE, list);
+    }
+
+    @SafeVarargs
+    public final <T> void delete(T... list) {
+        add(DELETE, list);
+    }
+
+    private void add(int type, Object[] list) {
+        if(list == null || list.length == 0) return;
+        synchronized (this) {
+            if(isClosed) {
+                throw new DatabaseException("WriteBehindBuffer is closed.");
+            }
+            for(Object o : list) {
+                if(o != null) mPending.add(new Op(type, o));
+            }
+            if(mPending.size() >= mMaxRows) {
+                schedule(0);
+            } else if(mScheduled == null) {
+                schedule(mMaxDelayMillis);
+            }
+        }
+    }
+
+    private void schedule(long delay) {
+        if(mScheduled != null) {
+            if(delay > 0) return;
+            mScheduled.cancel(false);
+        }
+        mScheduled = mScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flushPending();
+                } catch (RuntimeException e) {
+                    Logger.e(e);
+                    synchronized (WriteBehindBuffer.this) {
+                        if(mFailure == null) mFailure = e;
+                    }
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 立即将缓存的记录在一个事务中写入数据库，写入失败时整个事务回滚，这些记录会被丢弃
+     * @throws DatabaseException 之前的定时写入失败过，cause 为当时的异常；缓存的记录依然会先写入
+     */
+    public void flush() {
+        RuntimeException failure;
+        synchronized (this) {
+            failure = mFailure;
+            mFailure = null;
+        }
+        flushPending();
+        if(failure != null) {
+            throw new DatabaseException("A scheduled flush failed and its rows were dropped.", failure);
+        }
+    }
+
+    private void flushPending() {
+        //同一个缓冲区的多次写入需要保持先后顺序，取出记录和写入都在同一个锁内
+        synchronized (mFlushLock) {
+            List<Op> ops;
+            synchronized (this) {
+                if(mScheduled != null) {
+                    mScheduled.cancel(false);
+                    mScheduled = null;
+                }
+                if(mPending.isEmpty()) return;
+                ops = mPending;
+                mPending = new ArrayList<Op>();
+            }
+
+            if(mManager.getDatabase() == null) {
+                Logger.w("Database is closed, drop " + ops.size() + " rows.");
+                return;
+            }
+            final List<Op> list = ops;
+            mManager.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    int start = 0;
+                    for(int i = 1; i <= list.size(); i++) {
+                        //连续的同一种操作、同一个类合并为一次调用
+                        if(i < list.size() && list.get(i).isSameGroup(list.get(start))) continue;
+                        write(list.get(start).type, list.subList(start, i));
+                        start = i;
+                    }
+                }
+            });
+        }
+    }
+
+    private void write(int type, List<Op> ops) {
+        Object[] list = new Object[ops.size()];
+        for(int i = 0; i < list.length; i++) {
+            list[i] = ops.get(i).object;
+        }
+        switch (type) {
+            case INSERT: mManager.insert(list); break;
+            case REPLACE: mManager.replaceInto(list); break;
+            case UPDATE: mManager.update(list); break;
+            case DELETE: mManager.delete(list); break;
+        }
+    }
+
+    /**
+     * @return 还未写入数据库的记录数
+     */
+    public synchronized int getPendingCount() {
+        return mPending.size();
+    }
+
+    /**
+     * 写入缓存的记录并停止定时器，之后不能再使用
+     */
+    public void close() {
+        synchronized (this) {
+            if(isClosed) return;
+            isClosed = true;
+        }
+        try {
+            flush();
+        } finally {
+            mScheduler.shutdown();
+            mManager.unregister(this);
+        }
+    }
+
+    private static final class Op {
+        final int type;
+        final Object object;
+
+        Op(int type, Object object) {
+            this.type = type;
+            this.object = object;
+        }
+
+        boolean isSameGroup(Op op) {
+            return type == op.type && object.getClass() == op.object.getClass();
+        }
+    }
+}
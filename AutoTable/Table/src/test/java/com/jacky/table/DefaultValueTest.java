@@ -0,0 +1,78 @@
+package com.jacky.table;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 建表语句中字段的默认值按原生类型生成
+ */
+public class DefaultValueTest {
+
+    @Table("sample")
+    static class Sample {
+        @Column("count")
+        int count;
+        @Column("total")
+        Long total;
+        @Column("vip")
+        boolean vip;
+        @Column(value = "level", defValue = "3")
+        int level;
+        @Column(value = "rate", defValue = "-0.5")
+        double rate;
+        @Column(value = "enabled", defValue = "TRUE")
+        boolean enabled;
+        @Column("name")
+        String name;
+        @Column(value = "title", defValue = "it's")
+        String title;
+        @Column("data")
+        byte[] data;
+    }
+
+    private static String defaultOf(String column) {
+        return DBManager.getDefaultValue(TableInfo.of(Sample.class).getColumn(column));
+    }
+
+    @Test
+    public void primitiveNumbersDefaultToZero() {
+        assertEquals("0", defaultOf("count"));
+        assertEquals("0", defaultOf("vip"));
+    }
+
+    @Test
+    public void boxedAndBlobDefaultToNull() {
+        assertEquals("NULL", defaultOf("total"));
+        assertEquals("NULL", defaultOf("data"));
+    }
+
+    @Test
+    public void numbersAreNotQuoted() {
+        assertEquals("3", defaultOf("level"));
+        assertEquals("-0.5", defaultOf("rate"));
+        assertEquals("1", defaultOf("enabled"));
+    }
+
+    @Test
+    public void textIsQuoted() {
+        assertEquals("''", defaultOf("name"));
+        assertEquals("'it''s'", defaultOf("title"));
+    }
+
+    @Test
+    public void legacyDefaultsCompatible() {
+        ColumnInfo count = TableInfo.of(Sample.class).getColumn("count");
+        assertTrue(DBManager.isCompatibleDefault(count, "0"));
+        assertTrue(DBManager.isCompatibleDefault(count, "''"));
+        assertTrue(DBManager.isCompatibleDefault(TableInfo.of(Sample.class).getColumn("level"), "'3'"));
+        assertFalse(DBManager.isCompatibleDefault(count, "5"));
+    }
+
+    @Test
+    public void changedTextDefaultNotCompatible() {
+        ColumnInfo title = TableInfo.of(Sample.class).getColumn("title");
+        assertTrue(DBManager.isCompatibleDefault(title, "'it''s'"));
+        assertFalse(DBManager.isCompatibleDefault(title, "''"));
+    }
+}
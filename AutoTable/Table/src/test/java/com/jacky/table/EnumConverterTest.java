@@ -0,0 +1,60 @@
+package com.jacky.table;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 枚举按名称、序号保存，查询参数与保存时一样转换
+ */
+public class EnumConverterTest {
+
+    enum Color { RED, GREEN, BLUE }
+
+    @Table("car")
+    static class Car {
+        @Column(value = "id", isPrimary = true)
+        long id;
+        @Column(value = "color", enumType = EnumType.ORDINAL)
+        Color color;
+    }
+
+    @Test
+    public void byOrdinal() {
+        EnumConverter converter = EnumConverter.of(Color.class, EnumType.ORDINAL);
+        assertEquals(DBType.INT, converter.getDBType());
+        assertEquals(1, converter.toDatabase(Color.GREEN));
+        assertSame(Color.BLUE, converter.fromDatabase(2));
+        assertNull(converter.fromDatabase(3));
+    }
+
+    @Test
+    public void byName() {
+        EnumConverter converter = EnumConverter.of(Color.class, EnumType.NAME);
+        assertEquals(DBType.TEXT, converter.getDBType());
+        assertEquals("GREEN", converter.toDatabase(Color.GREEN));
+        assertSame(Color.BLUE, converter.fromDatabase("BLUE"));
+        assertNull(converter.fromDatabase("PINK"));
+    }
+
+    @Test
+    public void ordinalColumnType() {
+        assertEquals(DBType.INT, TableInfo.of(Car.class).getColumn("color").getDBType());
+    }
+
+    @Test
+    public void queryArgsConverted() {
+        CompiledQuery<Car> query = Query.of(Car.class).eq("color", Color.BLUE).compile();
+        assertArrayEquals(new Object[]{2}, query.getArgs(null));
+        //重复执行时传入的新参数同样转换
+        assertArrayEquals(new Object[]{0}, query.getArgs(new Object[]{Color.RED}));
+        //已经是数据库中的值时不再转换
+        assertArrayEquals(new Object[]{1}, query.getArgs(new Object[]{1}));
+    }
+
+    @Test
+    public void rawWhereArgsNotConverted() {
+        CompiledQuery<Car> query = Query.of(Car.class).where("color=?", 2).compile();
+        assertArrayEquals(new Object[]{2}, query.getArgs(null));
+    }
+}
@@ -0,0 +1,52 @@
+package com.jacky.table;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分页标记的编码、解析
+ */
+public class PageTokenTest {
+
+    @Table("score")
+    static class Score {
+        @Column(value = "id", isPrimary = true)
+        long id;
+        @Column("value")
+        double value;
+        @Column("name")
+        String name;
+    }
+
+    @Test
+    public void orderValueMayContainSeparator() {
+        String token = DBManager.encodePageToken("a:b:1", "42");
+        assertArrayEquals(new String[]{"a:b:1", "42"}, DBManager.decodePageToken(token));
+    }
+
+    @Test
+    public void emptyOrderValue() {
+        String token = DBManager.encodePageToken("", "7");
+        assertArrayEquals(new String[]{"", "7"}, DBManager.decodePageToken(token));
+    }
+
+    @Test(expected = DatabaseException.class)
+    public void invalidToken() {
+        DBManager.decodePageToken("99:abc");
+    }
+
+    @Test
+    public void valuesParsedToNativeTypes() {
+        TableInfo info = TableInfo.of(Score.class);
+        assertEquals(Long.MAX_VALUE, DBManager.parsePageValue(info.getColumn("id"), Long.toString(Long.MAX_VALUE)));
+        double value = 0.1 + 0.2;
+        assertEquals(value, DBManager.parsePageValue(info.getColumn("value"), Double.toString(value)));
+        assertEquals("12", DBManager.parsePageValue(info.getColumn("name"), "12"));
+    }
+
+    @Test(expected = DatabaseException.class)
+    public void invalidNumber() {
+        DBManager.parsePageValue(TableInfo.of(Score.class).getColumn("id"), "1.5");
+    }
+}
@@ -0,0 +1,78 @@
+package com.jacky.table;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Query 生成的语句和参数
+ */
+public class QueryTest {
+
+    @Table("student")
+    static class Student {
+        @Column(value = "id", isPrimary = true)
+        long id;
+        @Column("name")
+        String name;
+        @Column("age")
+        int age;
+    }
+
+    @Test
+    public void conditionsJoinedWithAnd() {
+        CompiledQuery<Student> query = Query.of(Student.class)
+                .eq("age", 18).in("name", "a", "b").orderBy("id", false).limit(20)
+                .compile();
+        assertEquals("SELECT * FROM student WHERE age=? AND name IN (?,?) ORDER BY id DESC LIMIT 20", query.getSql());
+        assertArrayEquals(new Object[]{18, "a", "b"}, query.getArgs(null));
+    }
+
+    @Test
+    public void nullValueHasNoArg() {
+        CompiledQuery<Student> query = Query.of(Student.class).eq("name", null).notEq("age", null).compile();
+        assertEquals("SELECT * FROM student WHERE name IS NULL AND age IS NOT NULL", query.getSql());
+        assertEquals(0, query.getArgCount());
+    }
+
+    @Test
+    public void rawWhereAndSelection() {
+        CompiledQuery<Student> query = Query.of(Student.class)
+                .select("id", "name").where("age<? OR age>?", 10, 20).between("id", 1, 9)
+                .compile();
+        assertEquals("SELECT id,name FROM student WHERE (age<? OR age>?) AND id BETWEEN ? AND ?", query.getSql());
+        assertArrayEquals(new Object[]{10, 20, 1, 9}, query.getArgs(new Object[0]));
+    }
+
+    @Test
+    public void countAndDeleteWithoutLimit() {
+        CompiledQuery<Student> query = Query.of(Student.class).gt("age", 18).orderBy("age", true).compile();
+        assertEquals("SELECT COUNT(1) FROM student WHERE age>?", query.getCountSql());
+        assertEquals("DELETE FROM student WHERE age>?", query.getDeleteSql());
+    }
+
+    @Test
+    public void countAndDeleteWithinLimit() {
+        CompiledQuery<Student> query = Query.of(Student.class).gt("age", 18).limit(10).offset(5).compile();
+        String rows = "SELECT rowid FROM student WHERE age>? LIMIT 10 OFFSET 5";
+        assertEquals("SELECT COUNT(1) FROM (" + rows + ")", query.getCountSql());
+        assertEquals("DELETE FROM student WHERE rowid IN (" + rows + ")", query.getDeleteSql());
+    }
+
+    @Test
+    public void reuseWithNewArgs() {
+        CompiledQuery<Student> query = Query.of(Student.class).eq("age", 18).compile();
+        assertArrayEquals(new Object[]{20}, query.getArgs(new Object[]{20}));
+        assertArrayEquals(new Object[]{18}, query.getArgs(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongArgCount() {
+        Query.of(Student.class).eq("age", 18).compile().getArgs(new Object[]{1, 2});
+    }
+
+    @Test(expected = DatabaseException.class)
+    public void unknownColumn() {
+        Query.of(Student.class).eq("grade", 1);
+    }
+}
@@ -0,0 +1,42 @@
+package com.jacky.table;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 慢查询的语句形式和 EXPLAIN QUERY PLAN 的解析
+ */
+public class SlowQueryDetectorTest {
+
+    @Test
+    public void literalsReplaced() {
+        assertEquals("SELECT * FROM t2 WHERE name=? AND age>? AND score<?",
+                SlowQueryDetector.getShape("SELECT * FROM t2 WHERE name='it''s' AND age>18 AND score<3.5"));
+    }
+
+    @Test
+    public void sameShapeForDifferentLiterals() {
+        assertEquals(SlowQueryDetector.getShape("SELECT * FROM t WHERE id=1"),
+                SlowQueryDetector.getShape("SELECT * FROM t WHERE id=200"));
+        assertEquals("SELECT * FROM t WHERE id=?", SlowQueryDetector.getShape("SELECT * FROM t WHERE id=?"));
+    }
+
+    @Test
+    public void fullScan() {
+        assertEquals("student", SlowQueryDetector.getFullScanTable("SCAN TABLE student"));
+        //3.36.0 之后的格式
+        assertEquals("student", SlowQueryDetector.getFullScanTable("SCAN student"));
+        assertEquals("student", SlowQueryDetector.getFullScanTable("SCAN TABLE student AS s"));
+    }
+
+    @Test
+    public void notFullScan() {
+        assertNull(SlowQueryDetector.getFullScanTable("SCAN TABLE student USING INDEX idx_age"));
+        assertNull(SlowQueryDetector.getFullScanTable("SCAN student USING COVERING INDEX idx_age"));
+        assertNull(SlowQueryDetector.getFullScanTable("SEARCH student USING INTEGER PRIMARY KEY (rowid=?)"));
+        assertNull(SlowQueryDetector.getFullScanTable("SCAN SUBQUERY 1"));
+        assertNull(SlowQueryDetector.getFullScanTable("SCAN CONSTANT ROW"));
+        assertNull(SlowQueryDetector.getFullScanTable(null));
+    }
+}
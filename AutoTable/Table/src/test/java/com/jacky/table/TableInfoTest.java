@@ -0,0 +1,97 @@
+package com.jacky.table;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 类映射信息的解析，不需要数据库，在本机运行
+ */
+public class TableInfoTest {
+
+    @Table(value = "person", autoId = true)
+    static class Person {
+        @Column(value = "id", isPrimary = true)
+        long id;
+        @Column("name")
+        String name;
+        @Column("age")
+        int age;
+        /** 没有 Column 注解，不是表字段 */
+        String nickname;
+    }
+
+    @Table("setting")
+    static class Setting {
+        @Column(value = "key", isPrimary = true)
+        String key;
+        @Column("value")
+        String value;
+    }
+
+    static class NoTable {
+        @Column("name")
+        String name;
+    }
+
+    @Test
+    public void parsesOncePerClass() {
+        assertSame(TableInfo.of(Person.class), TableInfo.of(Person.class));
+    }
+
+    @Test
+    public void columnsInDeclarationOrder() {
+        TableInfo info = TableInfo.of(Person.class);
+        assertEquals("person", info.getName());
+        assertArrayEquals(new String[]{"id", "name", "age"}, info.getColumnNames());
+        assertSame(info.getColumn("id"), info.getPrimary(true));
+        assertNull(info.getColumn("nickname"));
+    }
+
+    @Test
+    public void autoIdNotInserted() {
+        ColumnInfo[] columns = TableInfo.of(Person.class).getInsertColumns();
+        assertEquals(2, columns.length);
+        assertEquals("name", columns[0].name);
+        assertEquals("age", columns[1].name);
+    }
+
+    @Test(expected = DatabaseException.class)
+    public void missingTableAnnotation() {
+        TableInfo.of(NoTable.class).getName();
+    }
+
+    @Test
+    public void noPrimaryKey() {
+        assertNull(TableInfo.of(NoTable.class).getPrimary(false));
+    }
+
+    @Test
+    public void upsertUpdatesOtherColumns() {
+        TableInfo info = TableInfo.of(Setting.class);
+        assertEquals(" ON CONFLICT(key) DO UPDATE SET value=excluded.value",
+                info.getUpsertClause(info.getInsertColumns()));
+    }
+
+    @Test
+    public void upsertWithOnlyPrimaryKey() {
+        TableInfo info = TableInfo.of(Setting.class);
+        assertEquals(" ON CONFLICT(key) DO NOTHING",
+                info.getUpsertClause(new ColumnInfo[]{info.getPrimary(true)}));
+    }
+
+    @Test
+    public void multiRowInsert() {
+        TableInfo info = TableInfo.of(Person.class);
+        assertEquals("INSERT INTO person(name,age) VALUES (?,?)",
+                info.getInsertSql(info.getInsertColumns(), 1));
+        assertEquals("INSERT INTO person(name,age) VALUES (?,?),(?,?),(?,?)",
+                info.getInsertSql(info.getInsertColumns(), 3));
+    }
+
+    @Test
+    public void insertWithoutColumns() {
+        assertEquals("INSERT INTO person DEFAULT VALUES",
+                TableInfo.of(Person.class).getInsertSql(new ColumnInfo[0], 1));
+    }
+}
@@ -0,0 +1,391 @@
+package com.jacky.table.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * 为带有 Table、Column 注解的数据类生成 RowMapper 实现类，运行时直接访问成员，不再通过反射。
+ * 成员必须可以在同一个包内访问（非 private），或者有对应的 get/set 函数，否则不生成该类的映射器，
+ * 运行时依然使用反射的方式处理
+ */
+public class TableProcessor extends AbstractProcessor {
+
+    private static final String TABLE = "com.jacky.table.Table";
+    private static final String COLUMN = "com.jacky.table.Column";
+    private static final String TYPE_CONVERTER = "com.jacky.table.TypeConverter";
+    private static final String ROW_MAPPER = "com.jacky.table.RowMapper";
+    /** 与 RowMapper.SUFFIX 保持一致 */
+    private static final String SUFFIX = "_RowMapper";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        Set<String> set = new LinkedHashSet<String>();
+        set.add(TABLE);
+        set.add(COLUMN);
+        return set;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> classes = new LinkedHashSet<TypeElement>();
+        for(TypeElement annotation : annotations) {
+            String name = annotation.getQualifiedName().toString();
+            for(Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if(TABLE.equals(name) && element.getKind() == ElementKind.CLASS) {
+                    classes.add((TypeElement) element);
+                } else if(COLUMN.equals(name) && element.getKind() == ElementKind.FIELD) {
+                    classes.add((TypeElement) element.getEnclosingElement());
+                }
+            }
+        }
+
+        for(TypeElement type : classes) {
+            MapperInfo info = parse(type);
+            if(info != null) {
+                write(info);
+            }
+        }
+        //Table、Column 只由该处理器处理，避免 -Xlint:processing 提示没有处理器处理这些注解
+        return true;
+    }
+
+    /**
+     * 解析数据类中的字段
+     * @return 该类不能生成映射器时返回 null
+     */
+    private MapperInfo parse(TypeElement type) {
+        if(type.getModifiers().contains(Modifier.PRIVATE)
+                || type.getModifiers().contains(Modifier.ABSTRACT)
+                || !type.getTypeParameters().isEmpty()) {
+            return skip(type, "class is private, abstract or generic");
+        }
+        if(type.getNestingKind() != NestingKind.TOP_LEVEL
+                && (type.getNestingKind() != NestingKind.MEMBER || !type.getModifiers().contains(Modifier.STATIC))) {
+            return skip(type, "inner class is not static");
+        }
+
+        boolean hasConstructor = false;
+        for(ExecutableElement c : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if(c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE)) {
+                hasConstructor = true;
+                break;
+            }
+        }
+        if(!hasConstructor) {
+            return skip(type, "no accessible constructor without parameters");
+        }
+
+        List<ColumnMapper> columns = new ArrayList<ColumnMapper>();
+        for(VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            AnnotationMirror column = getAnnotation(field, COLUMN);
+            if(column == null) continue;
+
+            ColumnMapper mapper = new ColumnMapper();
+            mapper.name = getValue(column, "value");
+            mapper.getter = findGetter(type, field, getValue(column, "get"));
+            mapper.setter = findSetter(type, field, getValue(column, "set"),
+                    isConverted(column, field) ? null : getValue(column, "type"));
+            if(mapper.getter == null || mapper.setter == null) {
+                return skip(type, "field " + field.getSimpleName() + " is not accessible");
+            }
+            columns.add(mapper);
+        }
+        if(columns.isEmpty()) return null;
+
+        MapperInfo info = new MapperInfo();
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        info.packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        info.typeName = type.getQualifiedName().toString();
+        info.mapperName = getBinaryName(type) + SUFFIX;
+        info.columns = columns;
+        return info;
+    }
+
+    /**
+     * 与反射时一致：只调用 Column.get 指定的函数，否则直接读取成员，不会改用 getX/isX 函数
+     * @return 读取成员值的表达式，对象变量名为 t；无法访问时返回 null
+     */
+    private String findGetter(TypeElement type, VariableElement field, String get) {
+        if(!get.isEmpty()) {
+            ExecutableElement method = findMethod(type, get, null);
+            return method == null ? null : "t." + get + "()";
+        }
+        return isAccessible(field) ? "t." + field.getSimpleName() : null;
+    }
+
+    /**
+     * 与 ColumnInfo 中的规则一致：指定了转换器、成员的类型不能直接映射或者枚举按序号保存时，通过 TypeConverter 转换
+     */
+    private boolean isConverted(AnnotationMirror column, VariableElement field) {
+        if(!TYPE_CONVERTER.equals(getValue(column, "converter"))) return true;
+        Element element = processingEnv.getTypeUtils().asElement(field.asType());
+        if(element != null && element.getKind() == ElementKind.ENUM
+                && "ORDINAL".equals(getValue(column, "enumType"))) return true;
+        return getDBType(field.asType()) == null;
+    }
+
+    /**
+     * 与反射时一致：只调用 Column.set 指定的函数，否则直接设置成员，不会改用 setX 函数
+     * @param dbType 为 null 时表示通过转换器转换，set 函数的参数类型为成员的类型
+     * @return 设置成员值的语句，对象变量名为 t，值变量名为 value；无法访问时返回 null
+     */
+    private String findSetter(TypeElement type, VariableElement field, String set, String dbType) {
+        if(!set.isEmpty()) {
+            //与运行时一致：set 函数的参数类型由字段的数据库类型决定
+            TypeMirror param = dbType == null ? field.asType() : getSetterType(dbType, field.asType());
+            if(param == null) return null;
+            ExecutableElement method = findMethod(type, set, param);
+            return method == null ? null : "t." + set + "((" + getBoxedName(param) + ") value)";
+        }
+        if(isAccessible(field) && !field.getModifiers().contains(Modifier.FINAL)) {
+            return "t." + field.getSimpleName() + " = (" + getBoxedName(field.asType()) + ") value";
+        }
+        return null;
+    }
+
+    /**
+     * 查找可以访问的函数
+     * @param param 为 null 时查找无参数的函数，否则查找只有一个该类型参数的函数
+     */
+    private ExecutableElement findMethod(TypeElement type, String name, TypeMirror param) {
+        for(ExecutableElement method : ElementFilter.methodsIn(
+                processingEnv.getElementUtils().getAllMembers(type))) {
+            if(!method.getSimpleName().contentEquals(name)) continue;
+            if(!isAccessible(type, method) || method.getModifiers().contains(Modifier.STATIC)) continue;
+
+            List<? extends VariableElement> params = method.getParameters();
+            if(param == null) {
+                if(params.isEmpty() && method.getReturnType().getKind() != TypeKind.VOID) return method;
+            } else if(params.size() == 1
+                    && processingEnv.getTypeUtils().isSameType(params.get(0).asType(), param)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 与 ColumnInfo 中的规则一致，根据数据库类型决定 set 函数的参数类型
+     */
+    private TypeMirror getSetterType(String dbType, TypeMirror fieldType) {
+        if("NONE".equals(dbType)) {
+            dbType = getDBType(fieldType);
+            if(dbType == null) return null;
+        }
+        switch (dbType) {
+            case "TEXT" : return processingEnv.getElementUtils().getTypeElement("java.lang.String").asType();
+            case "INT" : return processingEnv.getTypeUtils().getPrimitiveType(TypeKind.INT);
+            case "DOUBLE" : return processingEnv.getTypeUtils().getPrimitiveType(TypeKind.DOUBLE);
+            case "FLOAT" : return processingEnv.getTypeUtils().getPrimitiveType(TypeKind.FLOAT);
+            case "BOOLEAN" : return processingEnv.getTypeUtils().getPrimitiveType(TypeKind.BOOLEAN);
+            case "CHAR" : return processingEnv.getTypeUtils().getPrimitiveType(TypeKind.CHAR);
+            case "LONG" : return processingEnv.getTypeUtils().getPrimitiveType(TypeKind.LONG);
+            case "BLOB" : return processingEnv.getTypeUtils().getArrayType(
+                    processingEnv.getTypeUtils().getPrimitiveType(TypeKind.BYTE));
+            default: return null;
+        }
+    }
+
+    private String getDBType(TypeMirror type) {
+        if(type.getKind().isPrimitive()) {
+            type = processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).asType();
+        }
+        String name = processingEnv.getTypeUtils().erasure(type).toString();
+        switch (name) {
+            case "java.lang.Integer" :
+            case "java.lang.Short" :
+            case "java.lang.Byte" : return "INT";
+            case "java.lang.Double" : return "DOUBLE";
+            case "java.lang.Character" : return "CHAR";
+            case "java.lang.Long" : return "LONG";
+            case "java.lang.Float" : return "FLOAT";
+            case "java.lang.Boolean" : return "BOOLEAN";
+            case "byte[]" :
+            case "java.nio.ByteBuffer" : return "BLOB";
+            default: break;
+        }
+        TypeMirror charSequence = processingEnv.getElementUtils().getTypeElement("java.lang.CharSequence").asType();
+        if(processingEnv.getTypeUtils().isAssignable(type, charSequence)) return "TEXT";
+        Element element = processingEnv.getTypeUtils().asElement(type);
+        if(element != null && element.getKind() == ElementKind.ENUM) return "TEXT";
+        return null;
+    }
+
+    private String getBoxedName(TypeMirror type) {
+        if(type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+        return type.toString();
+    }
+
+    private static boolean isAccessible(Element element) {
+        return !element.getModifiers().contains(Modifier.PRIVATE);
+    }
+
+    /**
+     * 映射器与数据类在同一个包中，继承自其它包的函数只有 public 的才能访问
+     */
+    private boolean isAccessible(TypeElement type, ExecutableElement method) {
+        if(method.getModifiers().contains(Modifier.PUBLIC)) return true;
+        if(!isAccessible(method)) return false;
+        return processingEnv.getElementUtils().getPackageOf(method)
+                .equals(processingEnv.getElementUtils().getPackageOf(type));
+    }
+
+    /**
+     * 运行时通过 Class.getName() + SUFFIX 加载映射器，嵌套类使用 $ 连接
+     */
+    private static String getBinaryName(TypeElement type) {
+        String name = type.getSimpleName().toString();
+        Element parent = type.getEnclosingElement();
+        while(parent instanceof TypeElement) {
+            name = parent.getSimpleName() + "$" + name;
+            parent = parent.getEnclosingElement();
+        }
+        return name;
+    }
+
+    private static AnnotationMirror getAnnotation(Element element, String annotation) {
+        for(AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if(type.getQualifiedName().contentEquals(annotation)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 注解属性的值，枚举类型返回枚举常量的名称
+     */
+    private String getValue(AnnotationMirror mirror, String key) {
+        Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                processingEnv.getElementUtils().getElementValuesWithDefaults(mirror);
+        for(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+            if(entry.getKey().getSimpleName().contentEquals(key)) {
+                Object value = entry.getValue().getValue();
+                if(value instanceof VariableElement) {
+                    return ((VariableElement) value).getSimpleName().toString();
+                }
+                return String.valueOf(value);
+            }
+        }
+        return "";
+    }
+
+    private MapperInfo skip(TypeElement type, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "RowMapper not generated for " + type.getQualifiedName() + ": " + reason + ", use reflection instead.");
+        return null;
+    }
+
+    private void write(MapperInfo info) {
+        String qualifiedName = info.packageName.isEmpty() ? info.mapperName : info.packageName + '.' + info.mapperName;
+        StringBuilder sb = new StringBuilder();
+        if(!info.packageName.isEmpty()) {
+            sb.append("package ").append(info.packageName).append(";\n\n");
+        }
+        sb.append("/**\n * Generated by TableCompiler, do not edit.\n */\n");
+        sb.append("public final class ").append(info.mapperName)
+                .append(" implements ").append(ROW_MAPPER).append('<').append(info.typeName).append("> {\n\n");
+
+        sb.append("    private static final String[] COLUMNS = {");
+        for(int i = 0; i < info.columns.size(); i++) {
+            if(i > 0) sb.append(", ");
+            sb.append('"').append(escape(info.columns.get(i).name)).append('"');
+        }
+        sb.append("};\n\n");
+
+        sb.append("    @Override\n    public String[] columns() {\n        return COLUMNS;\n    }\n\n");
+
+        sb.append("    @Override\n    public ").append(info.typeName).append(" newObject() {\n")
+                .append("        return new ").append(info.typeName).append("();\n    }\n\n");
+
+        sb.append("    @Override\n    public Object getValue(").append(info.typeName).append(" t, int column) {\n")
+                .append("        switch (column) {\n");
+        for(int i = 0; i < info.columns.size(); i++) {
+            sb.append("            case ").append(i).append(" : return ").append(info.columns.get(i).getter).append(";\n");
+        }
+        sb.append("            default: throw new IllegalArgumentException(\"column \" + column);\n")
+                .append("        }\n    }\n\n");
+
+        sb.append("    @Override\n    @SuppressWarnings(\"unchecked\")\n    public void setValue(")
+                .append(info.typeName).append(" t, int column, Object value) {\n")
+                .append("        switch (column) {\n");
+        for(int i = 0; i < info.columns.size(); i++) {
+            sb.append("            case ").append(i).append(" : ").append(info.columns.get(i).setter).append("; break;\n");
+        }
+        sb.append("            default: throw new IllegalArgumentException(\"column \" + column);\n")
+                .append("        }\n    }\n}\n");
+
+        Writer writer = null;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, getElement(info));
+            writer = file.openWriter();
+            writer.write(sb.toString());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.toString());
+        } finally {
+            if(writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private Element getElement(MapperInfo info) {
+        return processingEnv.getElementUtils().getTypeElement(info.typeName);
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static class MapperInfo {
+        String packageName;
+        /** 数据类的完整名称 */
+        String typeName;
+        /** 生成类的名称，不含包名 */
+        String mapperName;
+        List<ColumnMapper> columns;
+    }
+
+    private static class ColumnMapper {
+        /** 表字段名称 */
+        String name;
+        String getter;
+        String setter;
+    }
+}
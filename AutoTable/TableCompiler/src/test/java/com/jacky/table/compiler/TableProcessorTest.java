@@ -0,0 +1,328 @@
+package com.jacky.table.compiler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.*;
+
+/**
+ * 通过 javac 运行注解处理器，检查生成的映射器，以及不能生成时回退到反射
+ */
+public class TableProcessorTest {
+
+    /** 注解和 RowMapper 直接使用 Table 模块中的源码，保证与运行时一致 */
+    private static final File TABLE_SOURCE = new File("../Table/src/main/java/com/jacky/table");
+    private static final String[] TABLE_CLASSES = {"Table", "Column", "Index", "RowMapper",
+            "Unproguard", "TypeConverter", "DBType", "EnumType"};
+
+    private File dir;
+    private List<File> sources;
+    private List<Diagnostic<? extends JavaFileObject>> diagnostics;
+    private ClassLoader loader;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("processor", "");
+        assertTrue(dir.delete() && dir.mkdirs());
+        sources = new ArrayList<File>();
+        for(String name : TABLE_CLASSES) {
+            sources.add(new File(TABLE_SOURCE, name + ".java"));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    @Test
+    public void directFields() throws Exception {
+        source("test.Student",
+                "package test;",
+                "import com.jacky.table.*;",
+                "@Table(\"student\")",
+                "public class Student {",
+                "    @Column(value = \"id\", isPrimary = true) long id;",
+                "    @Column(\"name\") protected String name;",
+                "    @Column(\"score\") public Double score;",
+                "}");
+        compile();
+
+        Object mapper = mapper("test.Student");
+        assertArrayEquals(new String[]{"id", "name", "score"}, (String[]) call(mapper, "columns"));
+        Object student = call(mapper, "newObject");
+        assertEquals("test.Student", student.getClass().getName());
+
+        set(mapper, student, 0, 5L);
+        set(mapper, student, 1, "Tom");
+        set(mapper, student, 2, 90.5);
+        assertEquals(5L, get(mapper, student, 0));
+        assertEquals("Tom", get(mapper, student, 1));
+        assertEquals(90.5, get(mapper, student, 2));
+    }
+
+    @Test
+    public void getAndSetMethods() throws Exception {
+        source("test.Account",
+                "package test;",
+                "import com.jacky.table.*;",
+                "@Table(\"account\")",
+                "public class Account {",
+                "    @Column(value = \"balance\", get = \"getBalance\", set = \"setBalance\") private int balance;",
+                "    public int calls;",
+                "    public int getBalance() { calls++; return balance; }",
+                "    public void setBalance(int balance) { calls++; this.balance = balance; }",
+                "}");
+        compile();
+
+        Object mapper = mapper("test.Account");
+        Object account = call(mapper, "newObject");
+        set(mapper, account, 0, 100);
+        assertEquals(100, get(mapper, account, 0));
+        assertEquals(2, account.getClass().getDeclaredField("calls").getInt(account));
+    }
+
+    @Test
+    public void nestedClass() throws Exception {
+        source("test.Outer",
+                "package test;",
+                "import com.jacky.table.*;",
+                "public class Outer {",
+                "    @Table(\"inner\")",
+                "    static class Inner {",
+                "        @Column(\"value\") String value;",
+                "    }",
+                "}");
+        compile();
+
+        //运行时通过 Class.getName() + SUFFIX 加载
+        Object mapper = mapper("test.Outer$Inner");
+        Object inner = call(mapper, "newObject");
+        assertEquals("test.Outer$Inner", inner.getClass().getName());
+        set(mapper, inner, 0, "v");
+        assertEquals("v", get(mapper, inner, 0));
+    }
+
+    @Test
+    public void inheritedFromOtherPackage() throws Exception {
+        source("base.Named",
+                "package base;",
+                "public class Named {",
+                "    private String name;",
+                "    public String getName() { return name; }",
+                "    public void setName(String name) { this.name = name; }",
+                "}");
+        source("test.Person",
+                "package test;",
+                "import com.jacky.table.*;",
+                "@Table(\"person\")",
+                "public class Person extends base.Named {",
+                "    @Column(value = \"name\", get = \"getName\", set = \"setName\") private String name;",
+                "    @Column(\"age\") int age;",
+                "}");
+        compile();
+
+        Object mapper = mapper("test.Person");
+        Object person = call(mapper, "newObject");
+        set(mapper, person, 0, "Ann");
+        set(mapper, person, 1, 30);
+        assertEquals("Ann", get(mapper, person, 0));
+        assertEquals("Ann", person.getClass().getMethod("getName").invoke(person));
+        assertEquals(30, get(mapper, person, 1));
+    }
+
+    @Test
+    public void finalFieldUsesReflection() throws Exception {
+        source("test.Constant",
+                "package test;",
+                "import com.jacky.table.*;",
+                "@Table(\"constant\")",
+                "public class Constant {",
+                "    @Column(\"id\") long id;",
+                "    @Column(\"name\") final String name = \"a\";",
+                "}");
+        compile();
+        assertNoMapper("test.Constant", "field name is not accessible");
+    }
+
+    @Test
+    public void privateFieldUsesReflection() throws Exception {
+        source("test.Secret",
+                "package test;",
+                "import com.jacky.table.*;",
+                "@Table(\"secret\")",
+                "public class Secret {",
+                "    @Column(\"id\") long id;",
+                "    @Column(\"code\") private String code;",
+                "}");
+        compile();
+        assertNoMapper("test.Secret", "field code is not accessible");
+    }
+
+    @Test
+    public void protectedMethodInOtherPackageUsesReflection() throws Exception {
+        source("base.Coded",
+                "package base;",
+                "public class Coded {",
+                "    String code;",
+                "    public String getCode() { return code; }",
+                "    protected void setCode(String code) { this.code = code; }",
+                "}");
+        source("test.Item",
+                "package test;",
+                "import com.jacky.table.*;",
+                "@Table(\"item\")",
+                "public class Item extends base.Coded {",
+                "    @Column(value = \"code\", get = \"getCode\", set = \"setCode\") private String code;",
+                "}");
+        compile();
+        assertNoMapper("test.Item", "field code is not accessible");
+    }
+
+    @Test
+    public void unsupportedClassesUseReflection() throws Exception {
+        source("test.Holder",
+                "package test;",
+                "import com.jacky.table.*;",
+                "public class Holder {",
+                "    @Table(\"inner\")",
+                "    class Inner {",
+                "        @Column(\"id\") long id;",
+                "    }",
+                "    @Table(\"hidden\")",
+                "    private static class Hidden {",
+                "        @Column(\"id\") long id;",
+                "    }",
+                "    @Table(\"value\")",
+                "    static class Value {",
+                "        @Column(\"id\") long id;",
+                "        Value(long id) { this.id = id; }",
+                "    }",
+                "}");
+        compile();
+        assertNoMapper("test.Holder$Inner", "inner class is not static");
+        assertNoMapper("test.Holder$Hidden", "class is private");
+        assertNoMapper("test.Holder$Value", "no accessible constructor");
+    }
+
+    @Test
+    public void annotationsClaimed() throws Exception {
+        source("test.Plain",
+                "package test;",
+                "import com.jacky.table.*;",
+                "@Table(\"plain\")",
+                "public class Plain {",
+                "    @Column(\"id\") long id;",
+                "}");
+        compile("-Xlint:processing");
+        for(Diagnostic<? extends JavaFileObject> d : diagnostics) {
+            assertFalse(d.getMessage(null), d.getMessage(null).contains("No processor claimed"));
+        }
+    }
+
+    private void source(String className, String... lines) throws IOException {
+        File file = new File(dir, "src/" + className.replace('.', '/') + ".java");
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            for(String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+        sources.add(file);
+    }
+
+    private void compile(String... extraOptions) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("tests need a JDK", compiler);
+        File classes = new File(dir, "classes");
+        File generated = new File(dir, "generated");
+        assertTrue(classes.mkdirs() && generated.mkdirs());
+
+        List<String> options = new ArrayList<String>(Arrays.asList("-encoding", "UTF-8",
+                "-d", classes.getPath(), "-s", generated.getPath()));
+        Collections.addAll(options, extraOptions);
+
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<JavaFileObject>();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(collector, null, null);
+        try {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, collector, options, null,
+                    fileManager.getJavaFileObjectsFromFiles(sources));
+            task.setProcessors(Collections.singletonList(new TableProcessor()));
+            boolean success = task.call();
+            diagnostics = collector.getDiagnostics();
+            assertTrue(diagnostics.toString(), success);
+        } finally {
+            fileManager.close();
+        }
+        loader = new URLClassLoader(new URL[]{classes.toURI().toURL()}, getClass().getClassLoader());
+    }
+
+    private Object mapper(String className) throws Exception {
+        Class<?> clazz = loader.loadClass(className + "_RowMapper");
+        assertTrue(loader.loadClass("com.jacky.table.RowMapper").isAssignableFrom(clazz));
+        return clazz.getDeclaredConstructor().newInstance();
+    }
+
+    private void assertNoMapper(String className, String reason) {
+        try {
+            loader.loadClass(className + "_RowMapper");
+            fail("RowMapper generated for " + className);
+        } catch (ClassNotFoundException ignored) {
+        }
+        String name = className.replace('$', '.');
+        for(Diagnostic<? extends JavaFileObject> d : diagnostics) {
+            String message = d.getMessage(null);
+            if(d.getKind() == Diagnostic.Kind.NOTE && message.contains(name + ": " + reason)) {
+                assertTrue(message.endsWith("use reflection instead."));
+                return;
+            }
+        }
+        fail("no note for " + className + " in " + diagnostics);
+    }
+
+    private static Object call(Object mapper, String name) throws Exception {
+        return mapper.getClass().getMethod(name).invoke(mapper);
+    }
+
+    private static Object get(Object mapper, Object t, int column) throws Exception {
+        return mapper.getClass().getMethod("getValue", Object.class, int.class).invoke(mapper, t, column);
+    }
+
+    private static void set(Object mapper, Object t, int column, Object value) throws Exception {
+        mapper.getClass().getMethod("setValue", Object.class, int.class, Object.class).invoke(mapper, t, column, value);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if(children != null) {
+            for(File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}